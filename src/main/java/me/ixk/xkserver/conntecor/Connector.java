@@ -6,6 +6,9 @@
 package me.ixk.xkserver.conntecor;
 
 import java.util.concurrent.Executor;
+import me.ixk.xkserver.http.ContentDecoder;
+import me.ixk.xkserver.http.HttpHandler;
+import me.ixk.xkserver.io.ByteBufferPool;
 
 /**
  * @author Otstar Lin
@@ -39,4 +42,52 @@ public interface Connector {
      * @return 连接器
      */
     Acceptor getAcceptor();
+
+    /**
+     * 获取请求处理器
+     *
+     * @return 请求处理器，未设置时返回 null
+     */
+    default HttpHandler getHandler() {
+        return null;
+    }
+
+    /**
+     * 获取请求体缓冲的上限
+     * <p>
+     * 大于 0 时请求体以流的方式交付，请求头解析完成后即调用处理器，缓冲的内容超过上限时暂停读取 Socket
+     *
+     * @return 缓冲上限，小于等于 0 时缓冲整个请求体
+     */
+    default int getMaxContentBufferSize() {
+        return -1;
+    }
+
+    /**
+     * 获取解码后请求体的上限，防止压缩炸弹
+     *
+     * @return 上限，小于等于 0 时不限制
+     */
+    default long getMaxInflatedContentSize() {
+        return 64L * 1024 * 1024;
+    }
+
+    /**
+     * 创建请求体解码器，可以覆盖以支持其他 Content-Encoding
+     *
+     * @param encoding   Content-Encoding
+     * @param bufferPool 输出使用的对象池
+     *
+     * @return 解码器，不支持的编码返回 null
+     */
+    default ContentDecoder newContentDecoder(
+        final String encoding,
+        final ByteBufferPool bufferPool
+    ) {
+        return ContentDecoder.of(
+            encoding,
+            this.getMaxInflatedContentSize(),
+            bufferPool
+        );
+    }
 }
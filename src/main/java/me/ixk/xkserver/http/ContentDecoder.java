@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import java.util.function.Consumer;
+import me.ixk.xkserver.http.HttpHeader.Value;
+import me.ixk.xkserver.io.ByteBufferPool;
+import me.ixk.xkserver.io.ByteBufferStream;
+
+/**
+ * 请求体解码器
+ * <p>
+ * 位于 HttpParser 和 HttpInput 之间，按 Content-Encoding 增量解码解析器传入的内容块
+ *
+ * @author Otstar Lin
+ * @date 2021/1/18 上午 10:20
+ */
+public interface ContentDecoder extends AutoCloseable {
+    /**
+     * 解码内容块
+     *
+     * @param content 内容块，返回后已经全部读取，由调用方释放
+     * @param output  解码后的内容块，引用转移给 output
+     */
+    void decode(ByteBufferStream content, Consumer<ByteBufferStream> output);
+
+    /**
+     * 内容已经全部传入，检查编码的数据是否完整
+     */
+    void complete();
+
+    /**
+     * 释放解码器持有的资源
+     */
+    @Override
+    void close();
+
+    /**
+     * 创建内置的解码器
+     *
+     * @param encoding        Content-Encoding
+     * @param maxInflatedSize 解码后内容的上限，小于等于 0 时不限制
+     * @param bufferPool      输出使用的对象池
+     *
+     * @return 解码器，不支持的编码返回 null
+     */
+    static ContentDecoder of(
+        final String encoding,
+        final long maxInflatedSize,
+        final ByteBufferPool bufferPool
+    ) {
+        if (Value.GZIP.is(encoding) || Value.X_GZIP.is(encoding)) {
+            return InflaterContentDecoder.gzip(maxInflatedSize, bufferPool);
+        }
+        if (Value.DEFLATE.is(encoding)) {
+            return InflaterContentDecoder.deflate(maxInflatedSize, bufferPool);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Date 头字段生成器
+ * <p>
+ * Date 的精度只到秒，每秒只格式化一次，同一秒内的响应共享同一个字节数组
+ * <p>
+ * 格式化不使用 SimpleDateFormat，直接按 RFC 1123 的固定格式写入字符
+ *
+ * @author Otstar Lin
+ * @date 2021/1/21 上午 10:05
+ */
+public class DateGenerator {
+    static final String[] DAYS = {
+        "Thu",
+        "Fri",
+        "Sat",
+        "Sun",
+        "Mon",
+        "Tue",
+        "Wed",
+    };
+    static final String[] MONTHS = {
+        "Jan",
+        "Feb",
+        "Mar",
+        "Apr",
+        "May",
+        "Jun",
+        "Jul",
+        "Aug",
+        "Sep",
+        "Oct",
+        "Nov",
+        "Dec",
+    };
+    private static final byte[] DATE_PREFIX = "Date: ".getBytes(
+        StandardCharsets.ISO_8859_1
+    );
+
+    private static volatile CachedDate cached = new CachedDate(
+        System.currentTimeMillis() / 1000
+    );
+
+    /**
+     * 获取当前时间的 Date 值，如 Sun, 06 Nov 1994 08:49:37 GMT
+     *
+     * @return Date 值
+     */
+    public static String getDate() {
+        return current().value;
+    }
+
+    /**
+     * 获取当前时间的 "Date: xxx\r\n" 行
+     *
+     * @return Date 头字段行，同一秒内共享内容的只读 Buffer，position 和 limit 独立
+     */
+    public static ByteBuffer getDateField() {
+        return current().field.duplicate();
+    }
+
+    /**
+     * 按 RFC 1123 格式化时间，用于 Last-Modified 等头字段
+     *
+     * @param millis 毫秒时间戳
+     *
+     * @return 格式化后的时间
+     */
+    public static String formatDate(final long millis) {
+        return new String(
+            format(Math.floorDiv(millis, 1000)),
+            StandardCharsets.ISO_8859_1
+        );
+    }
+
+    private static CachedDate current() {
+        final long second = System.currentTimeMillis() / 1000;
+        CachedDate date = cached;
+        if (date.second != second) {
+            // 并发时可能重复格式化，结果相同，不需要加锁
+            date = new CachedDate(second);
+            cached = date;
+        }
+        return date;
+    }
+
+    /**
+     * 格式化为 EEE, dd MMM yyyy HH:mm:ss GMT
+     */
+    private static byte[] format(final long seconds) {
+        final long days = Math.floorDiv(seconds, 86400);
+        final int secondOfDay = Math.floorMod(seconds, 86400);
+        // 1970-01-01 为星期四
+        final String day = DAYS[Math.floorMod(days, 7)];
+        // 由天数计算年月日，参考 Howard Hinnant 的 civil_from_days
+        final long z = days + 719468;
+        final long era = Math.floorDiv(z, 146097);
+        final long doe = z - era * 146097;
+        final long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        final long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        final long mp = (5 * doy + 2) / 153;
+        final int dayOfMonth = (int) (doy - (153 * mp + 2) / 5 + 1);
+        final int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        final long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        final byte[] bytes = new byte[29];
+        put(bytes, 0, day);
+        bytes[3] = ',';
+        bytes[4] = ' ';
+        putDigits(bytes, 5, dayOfMonth, 2);
+        bytes[7] = ' ';
+        put(bytes, 8, MONTHS[month - 1]);
+        bytes[11] = ' ';
+        putDigits(bytes, 12, (int) year, 4);
+        bytes[16] = ' ';
+        putDigits(bytes, 17, secondOfDay / 3600, 2);
+        bytes[19] = ':';
+        putDigits(bytes, 20, secondOfDay / 60 % 60, 2);
+        bytes[22] = ':';
+        putDigits(bytes, 23, secondOfDay % 60, 2);
+        put(bytes, 25, " GMT");
+        return bytes;
+    }
+
+    private static void put(
+        final byte[] bytes,
+        final int offset,
+        final String value
+    ) {
+        for (int i = 0; i < value.length(); i++) {
+            bytes[offset + i] = (byte) value.charAt(i);
+        }
+    }
+
+    private static void putDigits(
+        final byte[] bytes,
+        final int offset,
+        int value,
+        final int length
+    ) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static class CachedDate {
+        private final long second;
+        private final String value;
+        private final ByteBuffer field;
+
+        private CachedDate(final long second) {
+            final byte[] date = format(second);
+            final byte[] field = new byte[DATE_PREFIX.length + date.length + 2];
+            System.arraycopy(DATE_PREFIX, 0, field, 0, DATE_PREFIX.length);
+            System.arraycopy(date, 0, field, DATE_PREFIX.length, date.length);
+            field[field.length - 2] = HttpTokens.CARRIAGE_RETURN;
+            field[field.length - 1] = HttpTokens.LINE_FEED;
+            this.second = second;
+            this.value = new String(date, StandardCharsets.ISO_8859_1);
+            this.field = ByteBuffer.wrap(field).asReadOnlyBuffer();
+        }
+    }
+}
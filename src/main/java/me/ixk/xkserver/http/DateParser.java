@@ -5,6 +5,7 @@
 
 package me.ixk.xkserver.http;
 
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -12,6 +13,8 @@ import java.util.TimeZone;
 
 /**
  * DateParser
+ * <p>
+ * RFC 1123、RFC 850 和 asctime 三种标准格式直接按字符解析，其他不规范的格式才使用 SimpleDateFormat 逐个尝试
  *
  * @author Otstar Lin
  * @date 2020/11/15 下午 7:53
@@ -49,9 +52,172 @@ public class DateParser {
     };
 
     public static long parseDate(String date) {
+        final long time = parseStandardDate(date);
+        if (time != -1) {
+            return time;
+        }
         return DATE_PARSER.get().parse(date);
     }
 
+    /**
+     * 解析标准格式的时间，不抛出异常
+     * <p>
+     * Sun, 06 Nov 1994 08:49:37 GMT（RFC 1123）
+     * <p>
+     * Sunday, 06-Nov-94 08:49:37 GMT（RFC 850）
+     * <p>
+     * Sun Nov  6 08:49:37 1994（asctime）
+     *
+     * @param date 时间
+     *
+     * @return 毫秒时间戳，不是标准格式时返回 -1
+     */
+    static long parseStandardDate(final String date) {
+        final int length = date.length();
+        int i = 0;
+        // 跳过星期
+        while (i < length && isAlpha(date.charAt(i))) {
+            i++;
+        }
+        if (i < 3 || i >= length) {
+            return -1;
+        }
+        if (date.charAt(i) == ',') {
+            if (i + 1 >= length || date.charAt(i + 1) != ' ') {
+                return -1;
+            }
+            i += 2;
+            if (length - i == 24 && date.charAt(i + 2) == ' ') {
+                // dd MMM yyyy HH:mm:ss GMT
+                return parseDate(date, i, ' ', 4, i + 12);
+            }
+            if (length - i == 22 && date.charAt(i + 2) == '-') {
+                // dd-MMM-yy HH:mm:ss GMT
+                return parseDate(date, i, '-', 2, i + 10);
+            }
+            return -1;
+        }
+        if (date.charAt(i) != ' ' || length - i != 21) {
+            return -1;
+        }
+        // MMM _d HH:mm:ss yyyy
+        i++;
+        final int month = parseMonth(date, i);
+        if (month < 0 || date.charAt(i + 3) != ' ') {
+            return -1;
+        }
+        final int day = date.charAt(i + 4) == ' '
+            ? parseDigits(date, i + 5, 1)
+            : parseDigits(date, i + 4, 2);
+        if (date.charAt(i + 6) != ' ' || date.charAt(i + 15) != ' ') {
+            return -1;
+        }
+        final int year = parseDigits(date, i + 16, 4);
+        return toMillis(year, month, day, date, i + 7);
+    }
+
+    /**
+     * 解析 dd?MMM?yy[yy] HH:mm:ss GMT
+     */
+    private static long parseDate(
+        final String date,
+        final int offset,
+        final char separator,
+        final int yearLength,
+        final int timeOffset
+    ) {
+        final int day = parseDigits(date, offset, 2);
+        final int month = parseMonth(date, offset + 3);
+        if (
+            month < 0 ||
+            date.charAt(offset + 6) != separator ||
+            date.charAt(timeOffset - 1) != ' ' ||
+            !date.startsWith(" GMT", timeOffset + 8)
+        ) {
+            return -1;
+        }
+        int year = parseDigits(date, offset + 7, yearLength);
+        if (yearLength == 2 && year >= 0) {
+            year += year < 70 ? 2000 : 1900;
+        }
+        return toMillis(year, month, day, date, timeOffset);
+    }
+
+    /**
+     * 解析 HH:mm:ss 并计算时间戳
+     */
+    private static long toMillis(
+        final int year,
+        final int month,
+        final int day,
+        final String date,
+        final int timeOffset
+    ) {
+        final int hour = parseDigits(date, timeOffset, 2);
+        final int minute = parseDigits(date, timeOffset + 3, 2);
+        final int second = parseDigits(date, timeOffset + 6, 2);
+        if (
+            year < 0 ||
+            day < 1 ||
+            day > 31 ||
+            hour < 0 ||
+            hour > 23 ||
+            minute < 0 ||
+            minute > 59 ||
+            second < 0 ||
+            second > 60 ||
+            date.charAt(timeOffset + 2) != ':' ||
+            date.charAt(timeOffset + 5) != ':'
+        ) {
+            return -1;
+        }
+        // 由年月日计算天数，参考 Howard Hinnant 的 days_from_civil
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = Math.floorDiv(y, 400);
+        final int yoe = y - era * 400;
+        final int mp = month > 2 ? month - 3 : month + 9;
+        final int doy = (153 * mp + 2) / 5 + day - 1;
+        final int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        final long days = (long) era * 146097 + doe - 719468;
+        return (((days * 24 + hour) * 60 + minute) * 60 + second) * 1000;
+    }
+
+    /**
+     * @return 月份 1 - 12，不是月份时返回 -1
+     */
+    private static int parseMonth(final String date, final int offset) {
+        for (int i = 0; i < DateGenerator.MONTHS.length; i++) {
+            final String month = DateGenerator.MONTHS[i];
+            if (date.regionMatches(true, offset, month, 0, 3)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 数字，包含非数字字符时返回 -1
+     */
+    private static int parseDigits(
+        final String date,
+        final int offset,
+        final int length
+    ) {
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final char c = date.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isAlpha(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
     private static final ThreadLocal<DateParser> DATE_PARSER = new ThreadLocal<DateParser>() {
 
         @Override
@@ -70,22 +236,34 @@ public class DateParser {
                 dateReceive[i].setTimeZone(GMT);
             }
 
-            try {
-                Date date = (Date) dateReceive[i].parseObject(dateVal);
+            final Date date = parse(dateReceive[i], dateVal);
+            if (date != null) {
                 return date.getTime();
-            } catch (Exception ignored) {}
+            }
         }
 
         if (dateVal.endsWith(" GMT")) {
             final String val = dateVal.substring(0, dateVal.length() - 4);
 
             for (SimpleDateFormat element : dateReceive) {
-                try {
-                    Date date = (Date) element.parseObject(val);
+                final Date date = parse(element, val);
+                if (date != null) {
                     return date.getTime();
-                } catch (Exception ignored) {}
+                }
             }
         }
         return -1;
     }
+
+    /**
+     * 使用 ParsePosition 解析，失败时返回 null，不使用异常控制流程
+     */
+    private static Date parse(
+        final SimpleDateFormat format,
+        final String date
+    ) {
+        final ParsePosition position = new ParsePosition(0);
+        final Object value = format.parseObject(date, position);
+        return position.getIndex() == 0 ? null : (Date) value;
+    }
 }
@@ -5,23 +5,34 @@
 
 package me.ixk.xkserver.http;
 
+import java.io.IOException;
 import java.net.Socket;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.concurrent.Executor;
+import lombok.extern.slf4j.Slf4j;
 import me.ixk.xkserver.conntecor.Connector;
 import me.ixk.xkserver.conntecor.Poller;
+import me.ixk.xkserver.conntecor.Poller.Selectable;
 import me.ixk.xkserver.http.HttpParser.RequestHandler;
 import me.ixk.xkserver.io.ByteBufferPool;
 import me.ixk.xkserver.io.ByteBufferStream;
 
 /**
  * HttpChannel
+ * <p>
+ * 流式模式下请求头解析完成后即调度处理器，请求体缓冲超过上限时取消 OP_READ，处理器读取后再恢复
+ * <p>
+ * 尾字段先收集在单独的 HttpFields 中，内容结束时再发布，解析线程不会修改处理器正在读取的头字段
+ * <p>
+ * 创建时附加到 SelectionKey 上，Poller 选中 OP_WRITE 时继续写出响应，Poller 还未读取 Socket，OP_READ 暂不处理
  *
  * @author Otstar Lin
  * @date 2020/10/27 上午 9:26
  */
-public class HttpChannel implements RequestHandler {
+@Slf4j
+public class HttpChannel implements RequestHandler, Selectable {
     private final Poller poller;
     private final SelectionKey selectionKey;
     private final SocketChannel channel;
@@ -32,7 +43,12 @@ public class HttpChannel implements RequestHandler {
     private HttpUri httpUri;
     private HttpVersion httpVersion;
     private final HttpFields httpFields = new HttpFields();
-    private final HttpInput httpInput = new HttpInput();
+    private final HttpFields httpTrailers = new HttpFields();
+    private final HttpParser httpParser;
+    private final HttpInput httpInput;
+    private final HttpOutput httpOutput;
+    private ContentDecoder contentDecoder;
+    private Request request;
 
     public HttpChannel(
         Connector connector,
@@ -45,6 +61,44 @@ public class HttpChannel implements RequestHandler {
         this.channel = (SocketChannel) selectionKey.channel();
         this.socket = this.channel.socket();
         this.executor = connector.getExecutor();
+        this.httpParser = new HttpParser(this);
+        this.httpInput = new HttpInput(connector.getMaxContentBufferSize());
+        this.httpInput.setDemandCallback(this::resumeRead);
+        this.httpOutput =
+            new HttpOutput(this.channel, this::writeInterest, this.bufferPool());
+        this.selectionKey.attach(this);
+    }
+
+    /**
+     * 重置通道和解析器，以便同一个连接处理下一个请求
+     * <p>
+     * 解析器重置时释放请求引用的 Buffer，未访问过的头字段和 Uri 会先解码
+     */
+    public void reset() {
+        this.httpParser.reset();
+        this.httpMethod = null;
+        this.httpUri = null;
+        this.httpVersion = null;
+        this.httpFields.reset();
+        this.httpTrailers.reset();
+        this.httpInput.recycle();
+        this.httpOutput.recycle();
+        if (this.contentDecoder != null) {
+            this.contentDecoder.close();
+            this.contentDecoder = null;
+        }
+    }
+
+    /**
+     * 请求头解析完成后准备 Request，同一个连接复用 Request 对象
+     */
+    private Request prepareRequest() {
+        if (this.request == null) {
+            this.request = new Request(this);
+        } else {
+            this.request.reset();
+        }
+        return this.request;
     }
 
     public Poller getPoller() {
@@ -97,7 +151,7 @@ public class HttpChannel implements RequestHandler {
     }
 
     public HttpField getHttpField(HttpHeader header) {
-        return this.getHttpField(header.asString());
+        return this.httpFields.get(header);
     }
 
     @Override
@@ -105,19 +159,172 @@ public class HttpChannel implements RequestHandler {
         this.httpFields.put(field);
     }
 
+    @Override
+    public HttpField getHttpTrailer(String name) {
+        return this.httpTrailers.get(name);
+    }
+
     @Override
     public void addHttpTrailer(HttpField field) {
-        this.httpFields.put(field);
+        this.httpTrailers.put(field);
     }
 
     @Override
     public void addContent(ByteBufferStream buffer) {
-        this.httpInput.writeBuffer(buffer);
+        if (this.contentDecoder == null) {
+            this.writeContent(buffer);
+            return;
+        }
+        try {
+            this.contentDecoder.decode(buffer, this::writeContent);
+        } finally {
+            buffer.close();
+        }
+    }
+
+    private void writeContent(final ByteBufferStream buffer) {
+        if (!this.httpInput.writeBuffer(buffer)) {
+            this.pauseRead();
+        }
+    }
+
+    @Override
+    public void headerComplete() {
+        this.contentDecoder = this.newContentDecoder();
+        if (this.httpInput.isStreaming()) {
+            this.dispatch();
+        }
+    }
+
+    @Override
+    public void contentComplete() {
+        if (this.contentDecoder != null) {
+            try {
+                this.contentDecoder.complete();
+            } catch (final BadMessageException e) {
+                this.httpInput.failure(e);
+                throw e;
+            } finally {
+                this.contentDecoder.close();
+            }
+        }
+        if (!this.httpInput.isStreaming()) {
+            // 处理器还未调度，可以直接合并到头字段
+            this.mergeTrailers();
+        }
+        // 流式模式下由 HttpInput 的锁保证处理器在 EOF 后能看到尾字段
+        this.httpInput.eof();
+    }
+
+    private void mergeTrailers() {
+        for (final HttpField trailer : this.httpTrailers.values()) {
+            HttpField field = this.httpFields.get(trailer.getName());
+            if (field == null) {
+                this.httpFields.put(trailer);
+                continue;
+            }
+            if (field.isReadOnly()) {
+                field = field.copy();
+            }
+            for (final String value : trailer.getValues()) {
+                field.addValue(value);
+            }
+            this.httpFields.put(field);
+        }
+    }
+
+    /**
+     * 按 Content-Encoding 创建解码器，identity 和不支持的编码返回 null
+     */
+    private ContentDecoder newContentDecoder() {
+        final HttpField field = this.getHttpField(HttpHeader.CONTENT_ENCODING);
+        if (field == null) {
+            return null;
+        }
+        final String encoding = field.getValue().trim();
+        if (HttpHeader.Value.IDENTITY.is(encoding)) {
+            return null;
+        }
+        return this.connector.newContentDecoder(encoding, this.bufferPool());
     }
 
     @Override
     public void requestComplete() {
         this.httpInput.flip();
+        if (!this.httpInput.isStreaming()) {
+            this.dispatch();
+        }
+    }
+
+    /**
+     * 在线程池中调用处理器
+     */
+    private void dispatch() {
+        final HttpHandler handler = this.connector.getHandler();
+        if (handler == null || this.executor == null) {
+            return;
+        }
+        this.executor.execute(
+                () -> {
+                    try {
+                        handler.handle(this.prepareRequest());
+                    } catch (final IOException | RuntimeException e) {
+                        log.error("Handle request error", e);
+                    }
+                }
+            );
+    }
+
+    @Override
+    public Runnable selected(
+        final SelectionKey key,
+        final SelectableChannel channel
+    ) {
+        if (!key.isWritable()) {
+            return null;
+        }
+        return this::writable;
+    }
+
+    /**
+     * Channel 可写，由 Poller 在 OP_WRITE 就绪时调用
+     */
+    public void writable() {
+        this.httpOutput.writable();
+    }
+
+    private void pauseRead() {
+        this.updateInterestOps(SelectionKey.OP_READ, false);
+    }
+
+    private void resumeRead() {
+        this.updateInterestOps(SelectionKey.OP_READ, true);
+    }
+
+    private void writeInterest() {
+        if (this.poller == null) {
+            // 没有 Poller 时不会收到 OP_WRITE，直接失败，避免阻塞的写入一直等待
+            this.httpOutput.failure(
+                    new IOException("No poller to wait for OP_WRITE")
+                );
+            return;
+        }
+        this.updateInterestOps(SelectionKey.OP_WRITE, true);
+    }
+
+    private void updateInterestOps(final int op, final boolean add) {
+        if (this.poller == null) {
+            return;
+        }
+        this.poller.submit(
+                selector -> {
+                    if (!this.selectionKey.isValid()) {
+                        return;
+                    }
+                    final int ops = this.selectionKey.interestOps();
+                    this.selectionKey.interestOps(add ? ops | op : ops & ~op);
+                }
+            );
     }
 
     public HttpMethod getHttpMethod() {
@@ -136,7 +343,34 @@ public class HttpChannel implements RequestHandler {
         return httpFields;
     }
 
+    /**
+     * 获取尾字段
+     * <p>
+     * 流式模式下尾字段不会合并到头字段，需要在请求体读取完毕（HttpInput isFinished）后才能读取
+     *
+     * @return 尾字段
+     */
+    public HttpFields getHttpTrailers() {
+        return httpTrailers;
+    }
+
+    public HttpParser getHttpParser() {
+        return httpParser;
+    }
+
     public HttpInput getHttpInput() {
         return httpInput;
     }
+
+    public HttpOutput getHttpOutput() {
+        return httpOutput;
+    }
+
+    public Request getRequest() {
+        return request;
+    }
+
+    public ContentDecoder getContentDecoder() {
+        return contentDecoder;
+    }
 }
@@ -5,12 +5,14 @@
 
 package me.ixk.xkserver.http;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
 
 /**
  * HttpField
@@ -23,11 +25,35 @@ public class HttpField {
     private final HttpHeader header;
     private final String name;
     private final List<String> values;
+    private final boolean readOnly;
+
+    /**
+     * 未解码的第一个值，首次访问时才按 ISO-8859-1 解码为 String
+     * <p>
+     * 解码后的值先加入列表再清空 raw，读取到 raw 为 null 时列表中一定已经有解码后的值
+     */
+    private volatile byte[] raw;
+    private int rawOffset;
+    private int rawLength;
+
+    /**
+     * 按值的下标缓存解析后的参数
+     */
+    private volatile Params[] paramsCache;
 
     public HttpField(
         final HttpHeader header,
         final String name,
         final List<String> values
+    ) {
+        this(header, name, values, false);
+    }
+
+    private HttpField(
+        final HttpHeader header,
+        final String name,
+        final List<String> values,
+        final boolean readOnly
     ) {
         if (header != null && name == null) {
             this.name = header.asString();
@@ -38,6 +64,7 @@ public class HttpField {
         }
         this.header = header;
         this.values = values;
+        this.readOnly = readOnly;
     }
 
     public HttpField(final HttpHeader header, final List<String> values) {
@@ -56,8 +83,83 @@ public class HttpField {
         this(name, new ArrayList<>());
     }
 
+    /**
+     * 创建只读的字段，用于缓存后在多个请求间共享
+     */
+    static HttpField readOnly(final HttpHeader header, final String value) {
+        return new HttpField(header, null, List.of(value), true);
+    }
+
+    /**
+     * 创建延迟解码的字段，值直接引用字节数组的区间
+     * <p>
+     * 在首次访问值或调用 {@link #decode()} 之前，字节数组对应区间的内容不能被修改
+     */
+    static HttpField lazy(
+        final HttpHeader header,
+        final String name,
+        final byte[] bytes,
+        final int offset,
+        final int length
+    ) {
+        final HttpField field = new HttpField(
+            header,
+            name,
+            new ArrayList<>(1)
+        );
+        field.raw = bytes;
+        field.rawOffset = offset;
+        field.rawLength = length;
+        return field;
+    }
+
+    private List<String> values() {
+        if (this.raw != null) {
+            this.decode();
+        }
+        return this.values;
+    }
+
+    /**
+     * 解码延迟解码的值，引用的 Buffer 被释放前需要调用
+     * <p>
+     * 多个线程同时首次访问时只解码一次
+     */
+    synchronized void decode() {
+        final byte[] raw = this.raw;
+        if (raw == null) {
+            return;
+        }
+        this.values.add(
+                0,
+                new String(
+                    raw,
+                    this.rawOffset,
+                    this.rawLength,
+                    StandardCharsets.ISO_8859_1
+                )
+            );
+        this.raw = null;
+    }
+
+    public boolean isDecoded() {
+        return this.raw == null;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public HttpField copy() {
+        return new HttpField(
+            this.header,
+            this.name,
+            new ArrayList<>(this.values())
+        );
+    }
+
     public void addValue(final String value) {
-        values.add(value);
+        this.values().add(value);
     }
 
     public String getValue() {
@@ -65,7 +167,7 @@ public class HttpField {
     }
 
     public String getValue(final int index) {
-        return values.get(index);
+        return this.values().get(index);
     }
 
     public HttpHeader getHeader() {
@@ -77,11 +179,14 @@ public class HttpField {
     }
 
     public String getLowerCaseName() {
+        if (this.header != null) {
+            return this.header.lowerCaseName();
+        }
         return this.name.toLowerCase();
     }
 
     public List<String> getValues() {
-        return values;
+        return this.values();
     }
 
     public boolean is(final String name) {
@@ -104,24 +209,136 @@ public class HttpField {
         return this.getParams(0);
     }
 
+    /**
+     * 解析后的参数按值的下标缓存，同一个值只解析一次
+     */
     public Params getParams(final int index) {
+        Params[] cache = this.paramsCache;
+        if (cache != null && index < cache.length && cache[index] != null) {
+            return cache[index];
+        }
         final String value = this.getValue(index);
         if (value == null) {
             return null;
         }
-        final int i = value.indexOf(";");
-        if (i < 0) {
-            return new Params(value);
+        final Params params = parseParams(value);
+        if (cache == null || index >= cache.length) {
+            final int length = Math.max(index + 1, this.size());
+            cache =
+                cache == null
+                    ? new Params[length]
+                    : Arrays.copyOf(cache, length);
         }
-        final String[] values = value.substring(i + 1).split(";");
-        final Map<String, String> params = new ConcurrentHashMap<>(
-            values.length
+        // 只读字段会被多个线程共享，Params 不可变，并发时最多重复解析
+        cache[index] = params;
+        this.paramsCache = cache;
+        return params;
+    }
+
+    /**
+     * 解析 value; name=value; name="quoted\"value"
+     * <p>
+     * 按下标扫描，不使用 split，引号内的 ; 和 = 不作为分隔符，只有存在转义时才使用 StringBuilder
+     *
+     * @param value 字段值
+     * @return 参数
+     */
+    static Params parseParams(final String value) {
+        final int length = value.length();
+        int end = indexOfDelimiter(value, 0, length, ';');
+        final String main = trim(value, 0, end);
+        if (end == length) {
+            return new Params(main);
+        }
+        final Map<String, String> params = new TreeMap<>(
+            String.CASE_INSENSITIVE_ORDER
         );
-        for (final String kv : values) {
-            final String[] split = kv.split("=");
-            params.put(split[0].trim(), split[1].trim());
+        int i = end + 1;
+        while (i < length) {
+            end = indexOfDelimiter(value, i, length, ';');
+            final int eq = indexOfDelimiter(value, i, end, '=');
+            final String name = trim(value, i, eq);
+            if (!name.isEmpty()) {
+                params.put(
+                    name,
+                    eq < end ? paramValue(value, eq + 1, end) : ""
+                );
+            }
+            i = end + 1;
         }
-        return new Params(value.substring(0, i), params);
+        return new Params(main, Collections.unmodifiableMap(params));
+    }
+
+    /**
+     * 查找不在引号内的分隔符
+     */
+    private static int indexOfDelimiter(
+        final String value,
+        final int start,
+        final int end,
+        final char delimiter
+    ) {
+        boolean quoted = false;
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+            if (quoted) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static String paramValue(
+        final String value,
+        final int start,
+        final int end
+    ) {
+        final String trimmed = trim(value, start, end);
+        final int length = trimmed.length();
+        if (length < 2 || trimmed.charAt(0) != '"') {
+            return trimmed;
+        }
+        // quoted-string，去除引号和转义
+        if (trimmed.indexOf('\\') < 0) {
+            return trimmed.substring(
+                1,
+                trimmed.charAt(length - 1) == '"' ? length - 1 : length
+            );
+        }
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 1; i < length; i++) {
+            final char c = trimmed.charAt(i);
+            if (c == '\\' && i + 1 < length) {
+                builder.append(trimmed.charAt(++i));
+            } else if (c == '"') {
+                break;
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String trim(final String value, int start, int end) {
+        while (start < end && isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        return value.substring(start, end);
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t';
     }
 
     public String getParam(final String name) {
@@ -137,15 +354,8 @@ public class HttpField {
     }
 
     public String stripParam(final int index) {
-        final String value = this.getValue(index);
-        if (value == null) {
-            return null;
-        }
-        final int i = value.indexOf(";");
-        if (i == -1) {
-            return value.trim();
-        }
-        return value.substring(0, i).trim();
+        final Params params = this.getParams(index);
+        return params == null ? null : params.getValue();
     }
 
     public String[] getParamValues() {
@@ -169,7 +379,7 @@ public class HttpField {
     }
 
     public int size() {
-        return this.getValues().size();
+        return this.values.size() + (this.raw == null ? 0 : 1);
     }
 
     @Override
@@ -193,22 +403,31 @@ public class HttpField {
         return result;
     }
 
-    private int nameHashCode() {
+    int nameHashCode() {
         int h = this.hashCache;
-        final int len = this.name.length();
-        if (h == 0 && len > 0) {
-            for (int i = 0; i < len; i++) {
-                char c = this.name.charAt(i);
-                if ((c >= 'a' && c <= 'z')) {
-                    c -= 0x20;
-                }
-                h = 31 * h + c;
-            }
+        if (h == 0 && this.name.length() > 0) {
+            h = nameHashCode(this.name);
             this.hashCache = h;
         }
         return h;
     }
 
+    /**
+     * 忽略大小写的名称 Hash，HttpFields 查找时使用，不需要先转为小写
+     */
+    static int nameHashCode(final CharSequence name) {
+        int h = 0;
+        final int len = name.length();
+        for (int i = 0; i < len; i++) {
+            char c = name.charAt(i);
+            if ((c >= 'a' && c <= 'z')) {
+                c -= 0x20;
+            }
+            h = 31 * h + c;
+        }
+        return h;
+    }
+
     public static class Params {
         public static final String VALUE_NAME = "value";
 
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import me.ixk.xkserver.utils.ByteTrie;
+
+/**
+ * 常见头字段缓存
+ * <p>
+ * 缓存完整的 "Name: Value" 行，解析器直接从字节中查找，命中时返回预先构建的只读 HttpField
+ *
+ * @author Otstar Lin
+ * @date 2021/1/15 上午 11:30
+ */
+public class HttpFieldCache {
+    /**
+     * 值区分大小写，所以整行都按区分大小写匹配
+     */
+    private static final ByteTrie<HttpField> CACHE = new ByteTrie<>(false);
+
+    static {
+        put(HttpHeader.ACCEPT, "*/*");
+        put(
+            HttpHeader.ACCEPT,
+            "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8"
+        );
+        put(
+            HttpHeader.ACCEPT,
+            "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,image/apng,*/*;q=0.8,application/signed-exchange;v=b3;q=0.9"
+        );
+        put(HttpHeader.ACCEPT, "application/json");
+        put(HttpHeader.ACCEPT_ENCODING, "gzip");
+        put(HttpHeader.ACCEPT_ENCODING, "gzip, deflate");
+        put(HttpHeader.ACCEPT_ENCODING, "gzip, deflate, br");
+        put(HttpHeader.ACCEPT_LANGUAGE, "en-US,en;q=0.9");
+        put(HttpHeader.ACCEPT_LANGUAGE, "en-US,en;q=0.5");
+        put(HttpHeader.ACCEPT_LANGUAGE, "zh-CN,zh;q=0.9");
+        put(HttpHeader.ACCEPT_LANGUAGE, "zh-CN,zh;q=0.9,en;q=0.8");
+        put(HttpHeader.CACHE_CONTROL, "no-cache");
+        put(HttpHeader.CACHE_CONTROL, "max-age=0");
+        put(HttpHeader.CONNECTION, "keep-alive");
+        put(HttpHeader.CONNECTION, "close");
+        put(HttpHeader.CONNECTION, "Upgrade");
+        put(HttpHeader.CONTENT_TYPE, "application/x-www-form-urlencoded");
+        put(HttpHeader.CONTENT_TYPE, "application/json");
+        put(HttpHeader.CONTENT_TYPE, "application/json;charset=UTF-8");
+        put(HttpHeader.EXPECT, "100-continue");
+        put(HttpHeader.PRAGMA, "no-cache");
+        put(HttpHeader.TRANSFER_ENCODING, "chunked");
+        put(HttpHeader.UPGRADE, "websocket");
+    }
+
+    private static void put(final HttpHeader header, final String value) {
+        CACHE.put(
+            header.asString() + ": " + value,
+            HttpField.readOnly(header, value)
+        );
+    }
+
+    /**
+     * 查找缓存的头字段
+     *
+     * @param bytes  字节数组
+     * @param offset 行开始的位置
+     * @param length 行的长度，不包含 CRLF
+     *
+     * @return 只读的 HttpField，未命中时返回 null
+     */
+    public static HttpField get(
+        final byte[] bytes,
+        final int offset,
+        final int length
+    ) {
+        return CACHE.get(bytes, offset, length);
+    }
+
+    public static HttpField get(final String line) {
+        return CACHE.get(line);
+    }
+}
@@ -5,27 +5,59 @@
 
 package me.ixk.xkserver.http;
 
-import java.util.Collection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * HttpFields
+ * <p>
+ * 同一个请求的头字段只会被一个线程访问，使用非并发的紧凑哈希表
+ * <p>
+ * 字段按插入顺序保存在数组中，开放寻址表只保存数组下标，键为小写名称，查找时使用忽略大小写的 Hash 和比较，不需要先转为小写
+ * <p>
+ * 已知的头字段额外按 HttpHeader 的序号保存下标，使用 {@link #get(HttpHeader)} 查找时直接读取数组
  *
  * @author Otstar Lin
  * @date 2020/10/27 下午 3:25
  */
-public class HttpFields implements Map<String, HttpField> {
-    private final Map<String, HttpField> fields;
+public class HttpFields extends AbstractMap<String, HttpField> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int HEADER_COUNT = HttpHeader.values().length;
+
+    private String[] names;
+    private HttpField[] fields;
+    private int[] hashes;
+    private HttpHeader[] headers;
+    /**
+     * 按 HttpHeader 序号保存字段下标 + 1，0 为不存在
+     */
+    private final int[] known = new int[HEADER_COUNT];
+    /**
+     * 开放寻址表，保存字段下标 + 1，0 为空
+     */
+    private int[] table;
+    private int size = 0;
+    private int modCount = 0;
+    private EntrySet entrySet;
 
     public HttpFields() {
-        this(new ConcurrentHashMap<>());
+        this(DEFAULT_CAPACITY);
     }
 
-    public HttpFields(Map<String, HttpField> fields) {
-        this.fields = fields;
+    public HttpFields(final int capacity) {
+        final int length = Math.max(capacity, 4);
+        this.names = new String[length];
+        this.fields = new HttpField[length];
+        this.hashes = new int[length];
+        this.headers = new HttpHeader[length];
+        this.table = new int[tableSize(length)];
     }
 
     public List<String> getValues(String name) {
@@ -42,8 +74,29 @@ public class HttpFields implements Map<String, HttpField> {
         return field == null ? null : field.getValue(index);
     }
 
+    public HttpField get(final HttpHeader header) {
+        final int index = this.known[header.ordinal()] - 1;
+        return index < 0 ? null : this.fields[index];
+    }
+
+    public String getValue(final HttpHeader header) {
+        final HttpField field = this.get(header);
+        return field == null ? null : field.getValue();
+    }
+
+    public boolean containsKey(final HttpHeader header) {
+        return this.known[header.ordinal()] != 0;
+    }
+
     public HttpField put(HttpField field) {
-        return this.put(field.getLowerCaseName(), field);
+        final String name = field.getName();
+        final int hash = field.nameHashCode();
+        final int index = this.indexOf(name, hash);
+        if (index >= 0) {
+            return this.set(index, field);
+        }
+        this.add(field.getLowerCaseName(), hash, field.getHeader(), field);
+        return null;
     }
 
     public void putAll(List<HttpField> fields) {
@@ -52,39 +105,54 @@ public class HttpFields implements Map<String, HttpField> {
         }
     }
 
+    /**
+     * 清除所有字段，以便复用
+     */
+    public void reset() {
+        this.clear();
+    }
+
     @Override
     public int size() {
-        return this.fields.size();
+        return this.size;
     }
 
     @Override
     public boolean isEmpty() {
-        return this.fields.isEmpty();
+        return this.size == 0;
     }
 
     @Override
     public boolean containsKey(Object key) {
-        return this.fields.containsKey(key.toString().toLowerCase());
-    }
-
-    @Override
-    public boolean containsValue(Object value) {
-        return this.fields.containsValue(value);
+        return this.indexOf(key.toString()) >= 0;
     }
 
     @Override
     public HttpField get(Object key) {
-        return this.fields.get(key.toString().toLowerCase());
+        final int index = this.indexOf(key.toString());
+        return index < 0 ? null : this.fields[index];
     }
 
     @Override
     public HttpField put(String key, HttpField value) {
-        return this.fields.put(key.toLowerCase(), value);
+        final int hash = HttpField.nameHashCode(key);
+        final int index = this.indexOf(key, hash);
+        if (index >= 0) {
+            return this.set(index, value);
+        }
+        this.add(key.toLowerCase(), hash, HttpHeader.from(key), value);
+        return null;
     }
 
     @Override
     public HttpField remove(Object key) {
-        return this.fields.remove(key.toString().toLowerCase());
+        final int index = this.indexOf(key.toString());
+        if (index < 0) {
+            return null;
+        }
+        final HttpField field = this.fields[index];
+        this.removeAt(index);
+        return field;
     }
 
     @Override
@@ -96,21 +164,249 @@ public class HttpFields implements Map<String, HttpField> {
 
     @Override
     public void clear() {
-        this.fields.clear();
+        if (this.size == 0) {
+            return;
+        }
+        Arrays.fill(this.names, 0, this.size, null);
+        Arrays.fill(this.fields, 0, this.size, null);
+        Arrays.fill(this.headers, 0, this.size, null);
+        Arrays.fill(this.table, 0);
+        Arrays.fill(this.known, 0);
+        this.size = 0;
+        this.modCount++;
     }
 
     @Override
-    public Set<String> keySet() {
-        return this.fields.keySet();
+    public Set<Entry<String, HttpField>> entrySet() {
+        if (this.entrySet == null) {
+            this.entrySet = new EntrySet();
+        }
+        return this.entrySet;
     }
 
-    @Override
-    public Collection<HttpField> values() {
-        return this.fields.values();
+    private int indexOf(final String name) {
+        return this.indexOf(name, HttpField.nameHashCode(name));
     }
 
-    @Override
-    public Set<Entry<String, HttpField>> entrySet() {
-        return this.fields.entrySet();
+    private int indexOf(final String name, final int hash) {
+        final int mask = this.table.length - 1;
+        for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+            final int index = this.table[slot] - 1;
+            if (index < 0) {
+                return -1;
+            }
+            if (this.hashes[index] == hash) {
+                final String key = this.names[index];
+                if (
+                    key.length() == name.length() &&
+                    key.regionMatches(true, 0, name, 0, name.length())
+                ) {
+                    return index;
+                }
+            }
+        }
+    }
+
+    private HttpField set(final int index, final HttpField field) {
+        final HttpField old = this.fields[index];
+        this.fields[index] = field;
+        return old;
+    }
+
+    private void add(
+        final String name,
+        final int hash,
+        final HttpHeader header,
+        final HttpField field
+    ) {
+        if (this.size == this.names.length) {
+            this.grow();
+        }
+        final int index = this.size++;
+        this.names[index] = name;
+        this.fields[index] = field;
+        this.hashes[index] = hash;
+        this.headers[index] = header == HttpHeader.UNKNOWN ? null : header;
+        this.insert(index);
+        this.modCount++;
+    }
+
+    private void insert(final int index) {
+        final int mask = this.table.length - 1;
+        int slot = spread(this.hashes[index]) & mask;
+        while (this.table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        this.table[slot] = index + 1;
+        final HttpHeader header = this.headers[index];
+        if (header != null) {
+            this.known[header.ordinal()] = index + 1;
+        }
+    }
+
+    /**
+     * 删除字段，后面的字段前移以保持插入顺序，删除很少发生，直接重建开放寻址表
+     */
+    private void removeAt(final int index) {
+        final int moved = this.size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(this.names, index + 1, this.names, index, moved);
+            System.arraycopy(this.fields, index + 1, this.fields, index, moved);
+            System.arraycopy(this.hashes, index + 1, this.hashes, index, moved);
+            System.arraycopy(
+                this.headers,
+                index + 1,
+                this.headers,
+                index,
+                moved
+            );
+        }
+        this.size--;
+        this.names[this.size] = null;
+        this.fields[this.size] = null;
+        this.headers[this.size] = null;
+        this.rehash();
+        this.modCount++;
+    }
+
+    private void grow() {
+        final int length = this.names.length << 1;
+        this.names = Arrays.copyOf(this.names, length);
+        this.fields = Arrays.copyOf(this.fields, length);
+        this.hashes = Arrays.copyOf(this.hashes, length);
+        this.headers = Arrays.copyOf(this.headers, length);
+        this.table = new int[tableSize(length)];
+        this.rehash();
+    }
+
+    private void rehash() {
+        Arrays.fill(this.table, 0);
+        Arrays.fill(this.known, 0);
+        for (int i = 0; i < this.size; i++) {
+            this.insert(i);
+        }
+    }
+
+    /**
+     * 表的大小为容量的 2 倍，负载因子不超过 0.5
+     */
+    private static int tableSize(final int capacity) {
+        return Integer.highestOneBit(capacity - 1) << 2;
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, HttpField>> {
+
+        @Override
+        public Iterator<Entry<String, HttpField>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return HttpFields.this.size;
+        }
+
+        @Override
+        public void clear() {
+            HttpFields.this.clear();
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, HttpField>> {
+        private int next = 0;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return this.next < HttpFields.this.size;
+        }
+
+        @Override
+        public Entry<String, HttpField> next() {
+            if (this.expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next++;
+            return new FieldEntry(this.last);
+        }
+
+        @Override
+        public void remove() {
+            if (this.last < 0) {
+                throw new IllegalStateException();
+            }
+            if (this.expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            HttpFields.this.removeAt(this.last);
+            this.next = this.last;
+            this.last = -1;
+            this.expectedModCount = modCount;
+        }
+    }
+
+    private class FieldEntry implements Entry<String, HttpField> {
+        private final String key;
+        private HttpField value;
+
+        private FieldEntry(final int index) {
+            this.key = names[index];
+            this.value = fields[index];
+        }
+
+        @Override
+        public String getKey() {
+            return this.key;
+        }
+
+        @Override
+        public HttpField getValue() {
+            return this.value;
+        }
+
+        @Override
+        public HttpField setValue(final HttpField value) {
+            final HttpField old = this.value;
+            this.value = value;
+            HttpFields.this.put(this.key, value);
+            return old;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            final Entry<?, ?> e = (Entry<?, ?>) o;
+            return (
+                this.key.equals(e.getKey()) &&
+                (
+                    this.value == null
+                        ? e.getValue() == null
+                        : this.value.equals(e.getValue())
+                )
+            );
+        }
+
+        @Override
+        public int hashCode() {
+            return (
+                this.key.hashCode() ^
+                (this.value == null ? 0 : this.value.hashCode())
+            );
+        }
+
+        @Override
+        public String toString() {
+            return this.key + "=" + this.value;
+        }
     }
 }
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import java.io.IOException;
+
+/**
+ * 请求处理器
+ *
+ * @author Otstar Lin
+ * @date 2021/1/17 上午 9:30
+ */
+@FunctionalInterface
+public interface HttpHandler {
+    /**
+     * 处理请求
+     * <p>
+     * 流式模式下在请求头解析完成后调用，此时请求体可能还没有全部到达，读取 HttpInput 时会阻塞
+     *
+     * @param request 请求
+     *
+     * @throws IOException IO 异常
+     */
+    void handle(Request request) throws IOException;
+}
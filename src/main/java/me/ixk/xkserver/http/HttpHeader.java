@@ -5,8 +5,11 @@
 
 package me.ixk.xkserver.http;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import me.ixk.xkserver.utils.ByteTrie;
 
 /**
  * HttpHeader
@@ -127,6 +130,10 @@ public enum HttpHeader {
     UNKNOWN("::UNKNOWN::"),;
 
     public static final Map<String, HttpHeader> CACHE = new HashMap<>(630);
+    /**
+     * 忽略大小写，用于直接从字节中查找
+     */
+    private static final ByteTrie<HttpHeader> TRIE = new ByteTrie<>(true);
 
     static {
         for (final HttpHeader header : HttpHeader.values()) {
@@ -135,16 +142,43 @@ public enum HttpHeader {
                     throw new IllegalStateException();
                 }
                 CACHE.put(header.toString(), header);
+                if (TRIE.put(header.toString(), header) != null) {
+                    throw new IllegalStateException();
+                }
             }
         }
     }
 
     private final String name;
     private final String lowerCase;
+    private final ByteBuffer buffer;
+    private final ByteBuffer bufferColonSpace;
 
     HttpHeader(final String name) {
         this.name = name;
         lowerCase = name.toLowerCase();
+        buffer =
+            ByteBuffer
+                .wrap(name.getBytes(StandardCharsets.ISO_8859_1))
+                .asReadOnlyBuffer();
+        bufferColonSpace =
+            ByteBuffer
+                .wrap((name + ": ").getBytes(StandardCharsets.ISO_8859_1))
+                .asReadOnlyBuffer();
+    }
+
+    /**
+     * @return 预先编码的名称，共享内容的只读 Buffer，position 和 limit 独立
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    /**
+     * @return 预先编码的 "Name: "，写出头字段时直接复制，共享内容的只读 Buffer
+     */
+    public ByteBuffer getBufferColonSpace() {
+        return bufferColonSpace.duplicate();
     }
 
     public String lowerCaseName() {
@@ -165,7 +199,15 @@ public enum HttpHeader {
     }
 
     public static HttpHeader from(final String name) {
-        return CACHE.get(name);
+        return TRIE.get(name);
+    }
+
+    public static HttpHeader from(
+        final byte[] bytes,
+        final int offset,
+        final int length
+    ) {
+        return TRIE.get(bytes, offset, length);
     }
 
     public enum Value {
@@ -185,6 +227,14 @@ public enum HttpHeader {
          * Transfer-Encoding: gzip
          */
         GZIP("gzip"),
+        /**
+         * Content-Encoding: x-gzip
+         */
+        X_GZIP("x-gzip"),
+        /**
+         * Content-Encoding: deflate
+         */
+        DEFLATE("deflate"),
         /**
          * Transfer-Encoding: identity
          */
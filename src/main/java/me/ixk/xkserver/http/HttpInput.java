@@ -6,55 +6,501 @@
 package me.ixk.xkserver.http;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Condition;
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import me.ixk.xkserver.io.ByteBufferStream;
+import me.ixk.xkserver.io.CompositeByteBufferStream;
+import me.ixk.xkserver.utils.AutoLock;
 
 /**
  * HttpInput
+ * <p>
+ * 解析器传入的内容块直接加入队列，不复制数据，读取时以块为单位批量复制
+ * <p>
+ * 内容未全部到达时读取会阻塞，设置了 maxBufferSize 时为流式模式，已读取的块会立即释放，缓冲的内容超过上限时通知调用方暂停读取
+ * <p>
+ * 设置 ReadListener 后为非阻塞模式，isReady 返回 false 后有新内容到达时调用 onDataAvailable，内容全部读取后调用 onAllDataRead
  *
  * @author Otstar Lin
  * @date 2020/10/27 上午 8:25
  */
 public class HttpInput extends ServletInputStream {
-    private final ByteBufferStream stream = new ByteBufferStream();
+    private final CompositeByteBufferStream stream = new CompositeByteBufferStream();
+    private final AutoLock lock = new AutoLock();
+    private final Condition dataAvailable = lock.newCondition();
+    private final int maxBufferSize;
+    private volatile Runnable demandCallback;
+    private boolean paused = false;
+    private boolean eof = false;
+    private Throwable failure = null;
+    private ReadListener readListener;
+    private boolean readInterested = false;
+    private boolean allDataRead = false;
 
-    public void writeBuffer(final ByteBufferStream buffer) {
+    public HttpInput() {
+        this(-1);
+    }
+
+    /**
+     * @param maxBufferSize 缓冲内容的上限，小于等于 0 时不限制，缓冲所有内容
+     */
+    public HttpInput(final int maxBufferSize) {
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /**
+     * 写入内容块，内容块的引用转移到 HttpInput，调用方不需要再 close
+     * <p>
+     * 内容块中的数据在 HttpInput 释放前不能被修改
+     *
+     * @param buffer 内容块
+     *
+     * @return 是否可以继续写入，返回 false 时调用方需要暂停读取，直到 demandCallback 被调用
+     */
+    public boolean writeBuffer(final ByteBufferStream buffer) {
+        final ReadListener listener;
+        final boolean full;
+        try (final AutoLock ignored = this.lock.lock()) {
+            stream.append(buffer);
+            this.dataAvailable.signalAll();
+            full =
+                this.maxBufferSize > 0 &&
+                stream.remainingLong() >= this.maxBufferSize;
+            if (full) {
+                this.paused = true;
+            }
+            listener = this.takeInterest();
+        }
+        if (listener != null) {
+            this.onDataAvailable(listener);
+        }
+        return !full;
+    }
+
+    /**
+     * 内容已经全部写入
+     */
+    public void eof() {
+        final ReadListener listener;
+        final boolean allDataRead;
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (this.eof) {
+                return;
+            }
+            this.eof = true;
+            this.dataAvailable.signalAll();
+            allDataRead = this.takeAllDataRead();
+            listener = allDataRead ? this.readListener : this.takeInterest();
+        }
+        if (allDataRead) {
+            this.onAllDataRead(listener);
+        } else if (listener != null) {
+            this.onDataAvailable(listener);
+        }
+    }
+
+    /**
+     * 读取内容失败，唤醒阻塞的读取
+     *
+     * @param failure 错误
+     */
+    public void failure(final Throwable failure) {
+        final ReadListener listener;
+        try (final AutoLock ignored = this.lock.lock()) {
+            this.failure = failure;
+            this.dataAvailable.signalAll();
+            listener = this.readListener;
+        }
+        if (listener != null) {
+            listener.onError(failure);
+        }
+    }
+
+    /**
+     * 取出等待中的 ReadListener
+     */
+    private ReadListener takeInterest() {
+        if (!this.readInterested || stream.available() <= 0) {
+            return null;
+        }
+        this.readInterested = false;
+        return this.readListener;
+    }
+
+    /**
+     * 内容已经全部读取且还未通知 onAllDataRead
+     */
+    private boolean takeAllDataRead() {
+        if (
+            this.readListener == null ||
+            this.allDataRead ||
+            !this.eof ||
+            stream.available() > 0
+        ) {
+            return false;
+        }
+        this.allDataRead = true;
+        return true;
+    }
+
+    private void onDataAvailable(final ReadListener listener) {
         try {
-            stream.readFrom(buffer.getInputStream());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            listener.onDataAvailable();
+        } catch (final Throwable e) {
+            listener.onError(e);
+            return;
+        }
+        final boolean allDataRead;
+        try (final AutoLock ignored = this.lock.lock()) {
+            allDataRead = this.takeAllDataRead();
+        }
+        if (allDataRead) {
+            this.onAllDataRead(listener);
         }
     }
 
-    public ByteBufferStream readBuffer() {
-        return stream;
+    private void onAllDataRead(final ReadListener listener) {
+        try {
+            listener.onAllDataRead();
+        } catch (final Throwable e) {
+            listener.onError(e);
+        }
+    }
+
+    /**
+     * 等待内容到达
+     *
+     * @return 是否有可读取的内容
+     */
+    private boolean blockForContent() throws IOException {
+        while (stream.available() <= 0) {
+            if (this.failure != null) {
+                throw new IOException(this.failure);
+            }
+            if (this.eof) {
+                return false;
+            }
+            if (this.readListener != null) {
+                throw new IllegalStateException("isReady() == false");
+            }
+            try {
+                this.dataAvailable.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取后释放已读取的块，缓冲的内容低于上限时恢复读取
+     */
+    private Runnable consumed() {
+        if (this.maxBufferSize <= 0) {
+            return null;
+        }
+        stream.discardReadComponents();
+        if (this.paused && stream.remainingLong() < this.maxBufferSize) {
+            this.paused = false;
+            return this.demandCallback;
+        }
+        return null;
+    }
+
+    private void demand(final Runnable callback) {
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    /**
+     * 读取下一个内容块
+     *
+     * @return 内容块视图，使用完毕后需要 close，没有内容时返回 null
+     */
+    public ByteBufferStream readBuffer() throws IOException {
+        final ByteBufferStream buffer;
+        final Runnable callback;
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (!this.blockForContent()) {
+                return null;
+            }
+            buffer = stream.readBuffer();
+            callback = this.consumed();
+        }
+        this.demand(callback);
+        return buffer;
+    }
+
+    /**
+     * 读取下一个内容块
+     * <p>
+     * 流式模式下读取的块会立即释放，需要使用 readBuffer
+     *
+     * @return 只读视图，在 HttpInput 释放前有效，没有内容时返回 null
+     */
+    public ByteBuffer readByteBuffer() throws IOException {
+        if (this.maxBufferSize > 0) {
+            throw new IllegalStateException(
+                "Streaming HttpInput does not support readByteBuffer"
+            );
+        }
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (!this.blockForContent()) {
+                return null;
+            }
+            return stream.readByteBuffer();
+        }
+    }
+
+    public int read(final ByteBuffer buffer) throws IOException {
+        final int length;
+        final Runnable callback;
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (!this.blockForContent()) {
+                return -1;
+            }
+            length = stream.read(buffer);
+            callback = this.consumed();
+        }
+        this.demand(callback);
+        return length;
     }
 
     @Override
     public int read() throws IOException {
-        return stream.read();
+        final int b;
+        final Runnable callback;
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (!this.blockForContent()) {
+                return -1;
+            }
+            b = stream.read();
+            callback = this.consumed();
+        }
+        this.demand(callback);
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+        throws IOException {
+        if (len <= 0) {
+            return 0;
+        }
+        final int length;
+        final Runnable callback;
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (!this.blockForContent()) {
+                return -1;
+            }
+            length = stream.read(b, off, len);
+            callback = this.consumed();
+        }
+        this.demand(callback);
+        return length;
+    }
+
+    @Override
+    public int readLine(final byte[] b, final int off, final int len)
+        throws IOException {
+        if (len <= 0) {
+            return 0;
+        }
+        int total = 0;
+        while (total < len) {
+            final int length;
+            final Runnable callback;
+            try (final AutoLock ignored = this.lock.lock()) {
+                if (!this.blockForContent()) {
+                    break;
+                }
+                length = stream.readLine(b, off + total, len - total);
+                callback = this.consumed();
+            }
+            this.demand(callback);
+            total += length;
+            if (b[off + total - 1] == '\n') {
+                break;
+            }
+        }
+        return total == 0 ? -1 : total;
+    }
+
+    @Override
+    public byte[] readAllBytes() throws IOException {
+        if (this.maxBufferSize > 0) {
+            return super.readAllBytes();
+        }
+        try (final AutoLock ignored = this.lock.lock()) {
+            this.blockForEof();
+            return stream.toArray();
+        }
+    }
+
+    @Override
+    public long transferTo(final OutputStream out) throws IOException {
+        if (this.maxBufferSize > 0) {
+            return super.transferTo(out);
+        }
+        try (final AutoLock ignored = this.lock.lock()) {
+            this.blockForEof();
+            final long length = stream.remainingLong();
+            stream.writeTo(out);
+            return length;
+        }
+    }
+
+    private void blockForEof() throws IOException {
+        while (!this.eof) {
+            if (this.failure != null) {
+                throw new IOException(this.failure);
+            }
+            try {
+                this.dataAvailable.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long length;
+        final Runnable callback;
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (!this.blockForContent()) {
+                return 0;
+            }
+            length = stream.skip(n);
+            callback = this.consumed();
+        }
+        this.demand(callback);
+        return length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        try (final AutoLock ignored = this.lock.lock()) {
+            return stream.available();
+        }
+    }
+
+    @Override
+    public boolean markSupported() {
+        return this.maxBufferSize <= 0;
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+        try (final AutoLock ignored = this.lock.lock()) {
+            stream.mark();
+        }
     }
 
     @Override
     public synchronized void reset() throws IOException {
-        stream.reset();
+        try (final AutoLock ignored = this.lock.lock()) {
+            stream.reset();
+        }
     }
 
     @Override
     public boolean isFinished() {
-        return stream.available() <= 0;
+        try (final AutoLock ignored = this.lock.lock()) {
+            return this.eof && stream.available() <= 0;
+        }
     }
 
     @Override
     public boolean isReady() {
-        return stream.available() > 0;
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (stream.available() > 0 || this.eof) {
+                return true;
+            }
+            this.readInterested = this.readListener != null;
+            return false;
+        }
     }
 
+    /**
+     * 内容已经全部写入，保留用于兼容
+     */
     public void flip() {
-        stream.flip();
+        this.eof();
+    }
+
+    /**
+     * 释放缓冲的内容并重置状态，以便同一个连接复用
+     * <p>
+     * reset 已被 InputStream 用于 mark/reset，这里使用 recycle
+     */
+    public void recycle() {
+        try (final AutoLock ignored = this.lock.lock()) {
+            stream.close();
+            this.paused = false;
+            this.eof = false;
+            this.failure = null;
+            this.readListener = null;
+            this.readInterested = false;
+            this.allDataRead = false;
+        }
+    }
+
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    public boolean isStreaming() {
+        return this.maxBufferSize > 0;
+    }
+
+    public boolean isPaused() {
+        try (final AutoLock ignored = this.lock.lock()) {
+            return this.paused;
+        }
+    }
+
+    /**
+     * 设置恢复读取的回调，缓冲的内容被读取到低于上限时调用
+     *
+     * @param demandCallback 回调
+     */
+    public void setDemandCallback(final Runnable demandCallback) {
+        this.demandCallback = demandCallback;
+    }
+
+    public ReadListener getReadListener() {
+        return readListener;
     }
 
     @Override
-    public void setReadListener(ReadListener readListener) {}
+    public void setReadListener(final ReadListener readListener) {
+        if (readListener == null) {
+            throw new NullPointerException("ReadListener is null");
+        }
+        final boolean allDataRead;
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (this.readListener != null) {
+                throw new IllegalStateException("ReadListener already set");
+            }
+            this.readListener = readListener;
+            allDataRead = this.takeAllDataRead();
+            if (!allDataRead && stream.available() <= 0) {
+                this.readInterested = true;
+                return;
+            }
+        }
+        if (allDataRead) {
+            this.onAllDataRead(readListener);
+        } else {
+            this.onDataAvailable(readListener);
+        }
+    }
 }
@@ -59,6 +59,11 @@ public enum HttpMethod {
      */
     PRI,;
 
+    /**
+     * 最长的方法加空格的长度，如 "OPTIONS "
+     */
+    private static final int MAX_LENGTH = 8;
+
     public static HttpMethod bytesToMethod(
         final byte[] bytes,
         final int position,
@@ -195,14 +200,39 @@ public enum HttpMethod {
     }
 
     public static HttpMethod bytesToMethod(final ByteBuffer buffer) {
+        return bytesToMethod(buffer, buffer.position(), buffer.limit());
+    }
+
+    /**
+     * 按绝对位置识别方法，不改变 Buffer 的 position
+     * <p>
+     * 直接内存的 Buffer 没有数组，先复制最长方法加空格的字节再识别
+     *
+     * @param buffer   Buffer
+     * @param position 开始位置
+     * @param limit    结束位置
+     *
+     * @return 方法，未知或不完整时返回 null
+     */
+    public static HttpMethod bytesToMethod(
+        final ByteBuffer buffer,
+        final int position,
+        final int limit
+    ) {
         if (buffer.hasArray()) {
             return bytesToMethod(
                 buffer.array(),
-                buffer.arrayOffset() + buffer.position(),
-                buffer.arrayOffset() + buffer.limit()
+                buffer.arrayOffset() + position,
+                buffer.arrayOffset() + limit
             );
         }
-        return null;
+        final int length = Math.min(limit - position, MAX_LENGTH);
+        if (length < 4) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(position, bytes, 0, length);
+        return bytesToMethod(bytes, 0, length);
     }
 
     public static final Map<String, HttpMethod> CACHE = new HashMap<>();
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.locks.Condition;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import me.ixk.xkserver.io.ByteBufferPool;
+import me.ixk.xkserver.io.CompositeByteBufferStream;
+import me.ixk.xkserver.utils.AutoLock;
+
+/**
+ * HttpOutput
+ * <p>
+ * 写入的内容先复制到缓冲区，再以 Gathering 的方式写出到非阻塞的 Channel，写不完时注册 OP_WRITE，由 Poller 调用 {@link
+ * #writable()} 继续写出
+ * <p>
+ * 没有设置 WriteListener 时 write 和 flush 会阻塞到内容全部写出，设置后 isReady 为 false 时不能写入，缓冲区写空后调用
+ * onWritePossible
+ *
+ * @author Otstar Lin
+ * @date 2021/1/17 下午 2:10
+ */
+public class HttpOutput extends ServletOutputStream {
+    private final CompositeByteBufferStream pending;
+    private final GatheringByteChannel channel;
+    private final Runnable writeInterest;
+    private final AutoLock lock = new AutoLock();
+    private final Condition drained = lock.newCondition();
+    private WriteListener writeListener;
+    private boolean ready = true;
+    private boolean interested = false;
+    private boolean closed = false;
+    private Throwable failure = null;
+
+    public HttpOutput(
+        final GatheringByteChannel channel,
+        final Runnable writeInterest
+    ) {
+        this(channel, writeInterest, ByteBufferPool.defaultPool());
+    }
+
+    /**
+     * @param channel       非阻塞的 Channel
+     * @param writeInterest 注册 OP_WRITE 的回调
+     * @param bufferPool    缓冲区使用的对象池
+     */
+    public HttpOutput(
+        final GatheringByteChannel channel,
+        final Runnable writeInterest,
+        final ByteBufferPool bufferPool
+    ) {
+        this.channel = channel;
+        this.writeInterest = writeInterest;
+        this.pending = new CompositeByteBufferStream(bufferPool);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        this.write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len)
+        throws IOException {
+        this.write(ByteBuffer.wrap(b, off, len));
+    }
+
+    public void write(final ByteBuffer buffer) throws IOException {
+        final boolean interest;
+        try (final AutoLock ignored = this.lock.lock()) {
+            this.checkWritable();
+            this.pending.write(buffer);
+            interest = this.flushPending();
+        }
+        this.afterFlush(interest);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        final boolean interest;
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (this.failure != null) {
+                throw new IOException(this.failure);
+            }
+            interest = this.flushPending();
+        }
+        this.afterFlush(interest);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (this.closed) {
+                return;
+            }
+        }
+        if (this.writeListener == null) {
+            this.flush();
+        }
+        try (final AutoLock ignored = this.lock.lock()) {
+            this.closed = true;
+            if (!this.pending.hasRemaining()) {
+                this.pending.close();
+            }
+        }
+    }
+
+    /**
+     * 释放未写出的内容并重置状态，以便同一个连接复用
+     */
+    public void recycle() {
+        try (final AutoLock ignored = this.lock.lock()) {
+            this.pending.close();
+            this.writeListener = null;
+            this.ready = true;
+            this.interested = false;
+            this.closed = false;
+            this.failure = null;
+        }
+    }
+
+    /**
+     * Channel 可写，由 Poller 在 OP_WRITE 就绪时调用
+     */
+    public void writable() {
+        final boolean interest;
+        final WriteListener listener;
+        try (final AutoLock ignored = this.lock.lock()) {
+            this.interested = false;
+            try {
+                interest = this.flushPending();
+            } catch (final IOException e) {
+                this.failed(e);
+                return;
+            }
+            listener = !interest && !this.ready ? this.writeListener : null;
+            if (listener != null) {
+                this.ready = true;
+            }
+            if (this.closed && !this.pending.hasRemaining()) {
+                this.pending.close();
+            }
+        }
+        if (interest) {
+            this.writeInterest.run();
+        } else if (listener != null) {
+            this.onWritePossible(listener);
+        }
+    }
+
+    /**
+     * 写出失败，唤醒阻塞的写入
+     *
+     * @param failure 错误
+     */
+    public void failure(final Throwable failure) {
+        try (final AutoLock ignored = this.lock.lock()) {
+            this.failed(failure);
+        }
+    }
+
+    private void failed(final Throwable failure) {
+        this.failure = failure;
+        this.drained.signalAll();
+        if (this.writeListener != null) {
+            this.writeListener.onError(failure);
+        }
+    }
+
+    private void checkWritable() throws IOException {
+        if (this.closed) {
+            throw new IOException("Closed");
+        }
+        if (this.failure != null) {
+            throw new IOException(this.failure);
+        }
+        if (this.writeListener != null && !this.ready) {
+            throw new IllegalStateException("isReady() == false");
+        }
+    }
+
+    /**
+     * 尽可能写出缓冲的内容
+     *
+     * @return 是否需要注册 OP_WRITE
+     */
+    private boolean flushPending() throws IOException {
+        while (this.pending.hasRemaining()) {
+            final long length = this.channel.write(this.pending.getBuffers());
+            if (length <= 0) {
+                break;
+            }
+            this.pending.skip(length);
+        }
+        this.pending.discardReadComponents();
+        if (!this.pending.hasRemaining()) {
+            this.drained.signalAll();
+            return false;
+        }
+        if (this.writeListener != null) {
+            this.ready = false;
+        }
+        if (this.interested) {
+            return false;
+        }
+        this.interested = true;
+        return true;
+    }
+
+    /**
+     * 阻塞模式下等待缓冲区写空
+     */
+    private void afterFlush(final boolean interest) throws IOException {
+        if (interest) {
+            this.writeInterest.run();
+        }
+        if (this.writeListener != null) {
+            return;
+        }
+        try (final AutoLock ignored = this.lock.lock()) {
+            while (this.pending.hasRemaining()) {
+                if (this.failure != null) {
+                    throw new IOException(this.failure);
+                }
+                try {
+                    this.drained.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void onWritePossible(final WriteListener listener) {
+        try {
+            listener.onWritePossible();
+        } catch (final Throwable e) {
+            listener.onError(e);
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        try (final AutoLock ignored = this.lock.lock()) {
+            return this.writeListener == null || this.ready;
+        }
+    }
+
+    @Override
+    public void setWriteListener(final WriteListener writeListener) {
+        if (writeListener == null) {
+            throw new NullPointerException("WriteListener is null");
+        }
+        try (final AutoLock ignored = this.lock.lock()) {
+            if (this.writeListener != null) {
+                throw new IllegalStateException("WriteListener already set");
+            }
+            this.writeListener = writeListener;
+            this.ready = !this.pending.hasRemaining();
+            if (!this.ready) {
+                return;
+            }
+        }
+        this.onWritePossible(writeListener);
+    }
+
+    public WriteListener getWriteListener() {
+        return writeListener;
+    }
+}
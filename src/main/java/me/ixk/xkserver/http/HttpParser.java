@@ -5,13 +5,17 @@
 
 package me.ixk.xkserver.http;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.function.Consumer;
 import me.ixk.xkserver.http.HttpHeader.Value;
 import me.ixk.xkserver.http.HttpTokens.Type;
 import me.ixk.xkserver.io.ByteBufferPool;
 import me.ixk.xkserver.io.ByteBufferStream;
+import me.ixk.xkserver.io.RetainableByteBuffer;
 
 /**
  * Http 报文解析
@@ -20,10 +24,6 @@ import me.ixk.xkserver.io.ByteBufferStream;
  * @date 2020/10/22 下午 9:10
  */
 public class HttpParser {
-    private static final String CONTENT_LENGTH = "content-length";
-    private static final String TRANSFER_ENCODING = "transfer-encoding";
-    private static final String TRAILER = "trailer";
-
     public enum State {
         /**
          * 开始
@@ -69,10 +69,6 @@ public class HttpParser {
          * 内容
          */
         CONTENT,
-        /**
-         * 空内容
-         */
-        EMPTY_CONTENT,
         /**
          * 定长内容
          */
@@ -85,6 +81,10 @@ public class HttpParser {
          * Chunk 大小
          */
         CHUNK_SIZE,
+        /**
+         * Chunk 扩展
+         */
+        CHUNK_PARAMS,
         /**
          * Chunk 内容
          */
@@ -105,12 +105,14 @@ public class HttpParser {
 
     private final RequestHandler handler;
     private State state = State.START_LINE;
-    private int contentLength = -1;
+    private long contentLength = -1;
     private String transferEncoding = null;
-    private int chunkLength = 0;
+    private long chunkLength = 0;
     private final Set<String> trailers;
     private boolean hasCr = false;
-    private int maxHeaderByteLength = -1;
+    private final int maxRequestLineLength;
+    private final int maxHeaderLength;
+    private final int maxHeadersLength;
 
     /**
      * 在使用后重置
@@ -118,10 +120,22 @@ public class HttpParser {
     private final StringBuilder string = new StringBuilder();
     private final StringBuilder value = new StringBuilder();
     private int length = 0;
+    private int headersLength = 0;
     private State headerState;
 
     private boolean eof = false;
 
+    /**
+     * 延迟解码的头字段引用的 Buffer，在 release 前保持引用
+     */
+    private final List<ByteBufferStream> retainedBuffers = new ArrayList<>();
+    private RetainableByteBuffer lastRetained = null;
+    /**
+     * 引用 Buffer 的延迟解码的头字段和 Uri，在 release 时解码或复制
+     */
+    private final List<HttpField> lazyFields = new ArrayList<>();
+    private HttpUri lazyUri = null;
+
     public HttpParser(final RequestHandler handler) {
         this(handler, -1);
     }
@@ -129,10 +143,27 @@ public class HttpParser {
     public HttpParser(
         final RequestHandler handler,
         final int maxHeaderByteLength
+    ) {
+        this(handler, maxHeaderByteLength, maxHeaderByteLength, -1);
+    }
+
+    /**
+     * @param handler              RequestHandler
+     * @param maxRequestLineLength 请求行的最大长度
+     * @param maxHeaderLength      单个头字段的最大长度
+     * @param maxHeadersLength     所有头字段的最大长度
+     */
+    public HttpParser(
+        final RequestHandler handler,
+        final int maxRequestLineLength,
+        final int maxHeaderLength,
+        final int maxHeadersLength
     ) {
         this.handler = handler;
         this.trailers = new HashSet<>();
-        this.maxHeaderByteLength = maxHeaderByteLength;
+        this.maxRequestLineLength = maxRequestLineLength;
+        this.maxHeaderLength = maxHeaderLength;
+        this.maxHeadersLength = maxHeadersLength;
     }
 
     public void parse(final ByteBufferStream buffer) {
@@ -180,21 +211,32 @@ public class HttpParser {
         ) {
             return;
         }
+        // 完整的请求行直接在数组上解析
+        if (this.parseLineFast(buffer)) {
+            return;
+        }
+        // 直接内存或请求行不完整时，方法和版本仍按字节识别，未知时才逐字节拼接后查表
+        this.parseMethod(buffer);
         while (buffer.hasRemaining()) {
+            if (this.state == State.SPACE2 && this.parseVersion(buffer)) {
+                return;
+            }
             final HttpTokens.Token token = this.next(buffer);
             if (token == null) {
                 break;
             }
 
-            this.addLength(
-                    l -> {
-                        throw new BadMessageException(
-                            this.state == State.URI
-                                ? HttpStatus.URI_TOO_LONG
-                                : HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE
-                        );
-                    }
+            this.length++;
+            if (
+                this.maxRequestLineLength > 0 &&
+                this.length > this.maxRequestLineLength
+            ) {
+                throw new BadMessageException(
+                    this.state == State.URI
+                        ? HttpStatus.URI_TOO_LONG
+                        : HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE
                 );
+            }
 
             final HttpTokens.Type type = token.getType();
             final char ch = token.getChar();
@@ -253,9 +295,7 @@ public class HttpParser {
                             break;
                         // 遇到空格则说明 URL 部分结束，转换到第二个空格状态
                         case SPACE:
-                            this.handler.setHttpUri(
-                                    new HttpUri(this.string.toString())
-                                );
+                            this.setHttpUri(this.string.toString());
                             this.string.setLength(0);
                             this.state = State.SPACE2;
                             break;
@@ -325,20 +365,22 @@ public class HttpParser {
             return;
         }
         while (buffer.hasRemaining()) {
+            // 处于行首时尝试直接在数组上解析完整的头字段
+            if (this.parseHeaderFast(buffer)) {
+                // 头字段结束后可能已经进入内容或结束状态
+                if (
+                    this.state != State.HEADER && this.state != State.TRAILER
+                ) {
+                    return;
+                }
+                continue;
+            }
             final HttpTokens.Token token = this.next(buffer);
             if (token == null) {
                 break;
             }
 
-            this.addLength(
-                    l -> {
-                        throw new BadMessageException(
-                            state == State.HEADER
-                                ? HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE
-                                : HttpStatus.PAYLOAD_TOO_LARGE
-                        );
-                    }
-                );
+            this.addHeaderLength(1);
 
             final HttpTokens.Type type = token.getType();
             final char ch = token.getChar();
@@ -355,12 +397,7 @@ public class HttpParser {
                             break;
                         // 头字段部分结束，进入 CONTENT 部分
                         case LF:
-                            if (this.headerState != State.TRAILER) {
-                                this.handler.headerComplete();
-                            } else {
-                                this.handler.trailerComplete();
-                            }
-                            this.state = State.CONTENT;
+                            this.headersComplete();
                             return;
                         default:
                             throw new IllegalCharacterException(token);
@@ -439,94 +476,54 @@ public class HttpParser {
 
     private void parseContent(final ByteBufferStream buffer) {
         if (
-            this.state.ordinal() >= State.TRAILER.ordinal() ||
+            this.state.ordinal() >= State.END_CONTENT.ordinal() ||
             !buffer.hasRemaining()
         ) {
             return;
         }
 
         if (this.state == State.CONTENT) {
-            // 首次解析内容的时候按规则分配
-            if (this.contentLength > 0) {
-                this.state = State.FIXED_CONTENT;
-            } else if (this.contentLength == 0) {
-                this.state = State.EMPTY_CONTENT;
-            } else if (Value.CHUNKED.is(this.transferEncoding)) {
-                this.state = State.CHUNKED_CONTENT;
-            } else {
-                throw new BadMessageException(
-                    "Transfer-Encoding and Content-Length must exist one"
-                );
-            }
+            this.startContent();
         }
 
-        while (buffer.hasRemaining()) {
+        while (
+            buffer.hasRemaining() &&
+            this.state.ordinal() < State.END_CONTENT.ordinal()
+        ) {
             switch (this.state) {
-                // 空内容
-                case EMPTY_CONTENT:
-                    this.handler.addContent(
-                            new ByteBufferStream(0, handler.bufferPool())
-                        );
-                    this.state = State.END_CONTENT;
-                    return;
                 // 定长内容
                 case FIXED_CONTENT:
-                    if (this.contentLength == 0) {
-                        this.state = State.END_CONTENT;
-                        return;
-                    }
                     final ByteBufferStream content = buffer.duplicate();
                     if (buffer.remaining() > this.contentLength) {
-                        content.limit(content.position() + this.contentLength);
+                        content.limit(
+                            content.position() + (int) this.contentLength
+                        );
                     }
                     buffer.position(buffer.position() + content.remaining());
                     this.contentLength -= content.remaining();
                     this.handler.addContent(content);
+                    // 读取到最后一个字节时立即结束，不等待后续数据
+                    if (this.contentLength == 0) {
+                        this.contentComplete(false);
+                    }
                     return;
                 // 分块内容
                 case CHUNKED_CONTENT:
                 case CHUNK_SIZE:
+                case CHUNK_PARAMS:
+                    // 完整的分块大小行直接在数组上解析
+                    if (this.parseChunkLineFast(buffer)) {
+                        break;
+                    }
                     final HttpTokens.Token token = this.next(buffer);
                     if (token == null) {
                         return;
                     }
-                    final HttpTokens.Type type = token.getType();
-                    final char ch = token.getChar();
-                    switch (type) {
-                        case ALPHA:
-                        case DIGIT:
-                            // 拼接分块大小 16 进制数
-                            this.state = State.CHUNK_SIZE;
-                            this.string.append(ch);
-                            break;
-                        case LF:
-                            if (this.state == State.CHUNK_SIZE) {
-                                try {
-                                    this.chunkLength =
-                                        Integer.parseInt(
-                                            this.string.toString(),
-                                            16
-                                        );
-                                } catch (final NumberFormatException e) {
-                                    throw new BadMessageException(
-                                        "Invalid chunk-length value [" +
-                                        this.string.toString() +
-                                        "]"
-                                    );
-                                }
-                                if (this.chunkLength == 0) {
-                                    // 分块为 0 则代表内容已经结束
-                                    this.state = State.END_CONTENT;
-                                } else {
-                                    // 不为 0 则切换为读取分块内容状态
-                                    this.state = State.CHUNK_CONTENT;
-                                }
-                                this.string.setLength(0);
-                            }
-                            break;
-                        default:
-                            throw new IllegalCharacterException(token);
+                    if (token.getType() == Type.LF) {
+                        this.chunkLineComplete();
+                        break;
                     }
+                    this.parseChunkSize(token);
                     break;
                 case CHUNK_CONTENT:
                     if (this.chunkLength <= 0) {
@@ -535,46 +532,515 @@ public class HttpParser {
                     } else {
                         final ByteBufferStream chunk = buffer.duplicate();
                         if (buffer.remaining() > this.chunkLength) {
-                            chunk.limit(chunk.position() + this.chunkLength);
+                            chunk.limit(
+                                chunk.position() + (int) this.chunkLength
+                            );
                         }
                         this.chunkLength -= chunk.remaining();
                         buffer.position(buffer.position() + chunk.remaining());
                         this.handler.addContent(chunk);
                     }
                     break;
-                case END_CONTENT:
-                    this.handler.contentComplete();
-                    this.state = State.TRAILER;
-                    return;
                 default:
                     throw new IllegalStateException(this.state.toString());
             }
         }
     }
 
+    /**
+     * 快速解析分块大小行，只处理缓冲区中包含完整行且为数组的情况，其他情况返回 false 交给逐字节解析
+     * <p>
+     * 行首可能是上一次读取未完成的部分，分块大小会在已解析的值上继续累加
+     */
+    private boolean parseChunkLineFast(final ByteBufferStream buffer) {
+        if (this.hasCr || !buffer.getBuffer().hasArray()) {
+            return false;
+        }
+        final byte[] bytes = buffer.array();
+        final int offset = buffer.arrayOffset();
+        final int start = offset + buffer.position();
+        final int lf = HttpTokens.indexOfLf(
+            bytes,
+            start,
+            offset + buffer.limit()
+        );
+        if (lf < 0) {
+            return false;
+        }
+        int end = lf;
+        if (end > start && bytes[end - 1] == HttpTokens.CARRIAGE_RETURN) {
+            end--;
+        }
+        for (int i = start; i < end; i++) {
+            final HttpTokens.Token token = HttpTokens.parse(bytes[i]);
+            if (token.getType() == Type.CR) {
+                throw new BadMessageException(
+                    "Bad EOL, LF does not exist after CR"
+                );
+            }
+            this.parseChunkSize(token);
+        }
+        buffer.position(lf + 1 - offset);
+        this.chunkLineComplete();
+        return true;
+    }
+
+    /**
+     * 分块大小行结束，分块为 0 则代表内容已经结束，不为 0 则切换为读取分块内容状态
+     * <p>
+     * CHUNKED_CONTENT 状态下的空行是上一个分块内容后的 CRLF
+     */
+    private void chunkLineComplete() {
+        if (this.state == State.CHUNKED_CONTENT) {
+            return;
+        }
+        if (this.chunkLength == 0) {
+            this.contentComplete(!this.trailers.isEmpty());
+        } else {
+            this.state = State.CHUNK_CONTENT;
+        }
+    }
+
+    /**
+     * 解析分块大小行，直接累加 16 进制数，忽略分块扩展
+     * <p>
+     * chunk-size = 1*HEXDIG
+     * chunk-ext  = *( BWS ";" BWS chunk-ext-name [ BWS "=" BWS chunk-ext-val ] )
+     */
+    private void parseChunkSize(final HttpTokens.Token token) {
+        final byte b = token.getByte();
+        if (this.state == State.CHUNK_PARAMS) {
+            if (token.getType() == Type.CNTL) {
+                throw new IllegalCharacterException(token);
+            }
+            return;
+        }
+        final int digit = HttpTokens.hexValue(b);
+        if (digit >= 0) {
+            if (this.state == State.CHUNKED_CONTENT) {
+                this.state = State.CHUNK_SIZE;
+                this.chunkLength = 0;
+            }
+            if (this.chunkLength > (Long.MAX_VALUE >> 4)) {
+                throw new BadMessageException("Invalid chunk-length value");
+            }
+            this.chunkLength = (this.chunkLength << 4) | digit;
+            return;
+        }
+        if (
+            this.state == State.CHUNK_SIZE &&
+            (
+                b == ';' ||
+                token.getType() == Type.SPACE ||
+                token.getType() == Type.HTAB
+            )
+        ) {
+            this.state = State.CHUNK_PARAMS;
+            return;
+        }
+        throw new IllegalCharacterException(token);
+    }
+
+    /**
+     * 快速解析请求行，只处理缓冲区中包含完整请求行且为数组的情况，其他情况返回 false 交给逐字节解析
+     */
+    private boolean parseLineFast(final ByteBufferStream buffer) {
+        if (
+            this.state != State.METHOD ||
+            this.hasCr ||
+            this.string.length() != 0 ||
+            !buffer.getBuffer().hasArray()
+        ) {
+            return false;
+        }
+        final byte[] bytes = buffer.array();
+        final int offset = buffer.arrayOffset();
+        final int start = offset + buffer.position();
+        final int limit = offset + buffer.limit();
+        final int lf = HttpTokens.indexOfLf(bytes, start, limit);
+        if (lf < 0) {
+            return false;
+        }
+        // 超出长度时交给逐字节解析，以便准确返回错误状态
+        if (
+            this.maxRequestLineLength > 0 &&
+            lf - start + 1 > this.maxRequestLineLength
+        ) {
+            return false;
+        }
+        int end = lf;
+        if (end > start && bytes[end - 1] == HttpTokens.CARRIAGE_RETURN) {
+            end--;
+        }
+        final HttpMethod method = HttpMethod.bytesToMethod(bytes, start, end);
+        if (method == null) {
+            return false;
+        }
+        int uriStart = start + method.asString().length() + 1;
+        while (uriStart < end && bytes[uriStart] == HttpTokens.SPACE) {
+            uriStart++;
+        }
+        final int uriEnd = HttpTokens.scan(
+            bytes,
+            uriStart,
+            end,
+            HttpTokens.URI_CHAR
+        );
+        if (
+            uriEnd == uriStart ||
+            (uriEnd < end && bytes[uriEnd] != HttpTokens.SPACE)
+        ) {
+            return false;
+        }
+        int versionStart = uriEnd;
+        while (versionStart < end && bytes[versionStart] == HttpTokens.SPACE) {
+            versionStart++;
+        }
+        if (end - versionStart != 8) {
+            return false;
+        }
+        final HttpVersion version = HttpVersion.bytesToVersion(
+            bytes,
+            versionStart,
+            lf + 1
+        );
+        if (version == null) {
+            return false;
+        }
+        final HttpUri uri;
+        try {
+            uri = new HttpUri(bytes, uriStart, uriEnd - uriStart);
+        } catch (final IllegalArgumentException e) {
+            throw new BadMessageException("Bad request target", e);
+        }
+        // Uri 的各个部分延迟解码，需要保持 Buffer 的引用
+        this.retainBuffer(buffer);
+        this.lazyUri = uri;
+        this.handler.setHttpMethod(method);
+        this.handler.setHttpUri(uri);
+        this.handler.setHttpVersion(version);
+        buffer.position(lf + 1 - offset);
+        this.length = 0;
+        this.state = State.HEADER;
+        return true;
+    }
+
+    /**
+     * 按字节识别方法，成功时跳过方法和其后的空格
+     */
+    private void parseMethod(final ByteBufferStream buffer) {
+        if (
+            this.state != State.METHOD ||
+            this.hasCr ||
+            this.string.length() != 0
+        ) {
+            return;
+        }
+        final HttpMethod method = HttpMethod.bytesToMethod(buffer.getBuffer());
+        if (method == null) {
+            return;
+        }
+        final int length = method.asString().length() + 1;
+        if (
+            this.maxRequestLineLength > 0 &&
+            this.length + length > this.maxRequestLineLength
+        ) {
+            return;
+        }
+        this.handler.setHttpMethod(method);
+        buffer.position(buffer.position() + length);
+        this.length += length;
+        this.state = State.SPACE1;
+    }
+
+    /**
+     * 按字节识别版本，只处理缓冲区中包含版本和换行的情况，成功时结束请求行
+     */
+    private boolean parseVersion(final ByteBufferStream buffer) {
+        final ByteBuffer bytes = buffer.getBuffer();
+        final int position = bytes.position();
+        final int limit = bytes.limit();
+        final HttpVersion version = HttpVersion.bytesToVersion(
+            bytes,
+            position,
+            limit
+        );
+        if (version == null) {
+            return false;
+        }
+        int lf = position + 8;
+        if (bytes.get(lf) == HttpTokens.CARRIAGE_RETURN) {
+            lf++;
+        }
+        if (lf >= limit || bytes.get(lf) != HttpTokens.LINE_FEED) {
+            return false;
+        }
+        if (
+            this.maxRequestLineLength > 0 &&
+            this.length + lf - position + 1 > this.maxRequestLineLength
+        ) {
+            return false;
+        }
+        this.handler.setHttpVersion(version);
+        buffer.position(lf + 1);
+        this.length = 0;
+        this.state = State.HEADER;
+        return true;
+    }
+
+    /**
+     * 快速解析一行头字段，只处理缓冲区中包含完整行且为数组的情况，其他情况返回 false 交给逐字节解析
+     */
+    private boolean parseHeaderFast(final ByteBufferStream buffer) {
+        if (
+            (this.state != State.HEADER && this.state != State.TRAILER) ||
+            this.hasCr ||
+            this.string.length() != 0 ||
+            !buffer.getBuffer().hasArray()
+        ) {
+            return false;
+        }
+        final byte[] bytes = buffer.array();
+        final int offset = buffer.arrayOffset();
+        final int start = offset + buffer.position();
+        final int limit = offset + buffer.limit();
+        final int lf = HttpTokens.indexOfLf(bytes, start, limit);
+        if (lf < 0) {
+            return false;
+        }
+        // 每行只检查一次长度，放弃的行交给慢速路径逐字节计算，不能提前计入
+        final int lineLength = lf - start + 1;
+        int end = lf;
+        if (end > start && bytes[end - 1] == HttpTokens.CARRIAGE_RETURN) {
+            end--;
+        }
+        // 空行，头字段部分结束
+        if (end == start) {
+            this.addHeaderLength(lineLength);
+            buffer.position(lf + 1 - offset);
+            this.headersComplete();
+            return true;
+        }
+        // 常见的头字段行直接使用缓存
+        final HttpField cached = HttpFieldCache.get(bytes, start, end - start);
+        if (cached != null) {
+            this.addHeaderLength(lineLength);
+            this.headerState = this.state;
+            buffer.position(lf + 1 - offset);
+            this.addHeader(cached);
+            return true;
+        }
+        if (HttpTokens.parse(bytes[start]).getType() != Type.ALPHA) {
+            return false;
+        }
+        final int nameEnd = HttpTokens.scan(
+            bytes,
+            start + 1,
+            end,
+            HttpTokens.TOKEN_CHAR
+        );
+        if (nameEnd < end && bytes[nameEnd] != HttpTokens.COLON) {
+            return false;
+        }
+        int valueStart = nameEnd < end ? nameEnd + 1 : end;
+        while (
+            valueStart < end &&
+            (
+                bytes[valueStart] == HttpTokens.SPACE ||
+                bytes[valueStart] == HttpTokens.TAB
+            )
+        ) {
+            valueStart++;
+        }
+        if (HttpTokens.scanValue(bytes, valueStart, end) < end) {
+            return false;
+        }
+        this.addHeaderLength(lineLength);
+        this.headerState = this.state;
+        buffer.position(lf + 1 - offset);
+        final HttpHeader header = HttpHeader.from(bytes, start, nameEnd - start);
+        // 值延迟解码，需要保持 Buffer 的引用
+        this.retainBuffer(buffer);
+        final HttpField field = HttpField.lazy(
+            header,
+            header != null
+                ? header.asString()
+                : new String(
+                    bytes,
+                    start,
+                    nameEnd - start,
+                    StandardCharsets.ISO_8859_1
+                ),
+            bytes,
+            valueStart,
+            end - valueStart
+        );
+        this.lazyFields.add(field);
+        this.addHeader(field);
+        return true;
+    }
+
+    private void setHttpUri(final String uri) {
+        try {
+            this.handler.setHttpUri(new HttpUri(uri));
+        } catch (final IllegalArgumentException e) {
+            throw new BadMessageException("Bad request target", e);
+        }
+    }
+
+    private void retainBuffer(final ByteBufferStream buffer) {
+        final RetainableByteBuffer retainable = buffer.getRetainable();
+        if (retainable != this.lastRetained) {
+            this.retainedBuffers.add(buffer.duplicate());
+            this.lastRetained = retainable;
+        }
+    }
+
+    /**
+     * 重置解析器，释放引用的 Buffer，以便同一个连接解析下一个请求
+     */
+    public void reset() {
+        this.release();
+        this.state = State.START_LINE;
+        this.contentLength = -1;
+        this.transferEncoding = null;
+        this.chunkLength = 0;
+        this.trailers.clear();
+        this.hasCr = false;
+        this.string.setLength(0);
+        this.value.setLength(0);
+        this.length = 0;
+        this.headersLength = 0;
+        this.headerState = null;
+        this.eof = false;
+    }
+
+    /**
+     * 释放延迟解码的头字段和 Uri 引用的 Buffer
+     * <p>
+     * 释放前未访问过的头字段值会先解码，Uri 复制原始字节，释放后仍然可以访问
+     */
+    public void release() {
+        for (final HttpField field : this.lazyFields) {
+            field.decode();
+        }
+        this.lazyFields.clear();
+        if (this.lazyUri != null) {
+            this.lazyUri.detach();
+            this.lazyUri = null;
+        }
+        for (final ByteBufferStream buffer : this.retainedBuffers) {
+            buffer.close();
+        }
+        this.retainedBuffers.clear();
+        this.lastRetained = null;
+    }
+
+    private void headersComplete() {
+        this.length = 0;
+        this.headersLength = 0;
+        this.state = State.CONTENT;
+        if (this.headerState != State.TRAILER) {
+            this.handler.headerComplete();
+            this.startContent();
+        } else {
+            this.handler.trailerComplete();
+            this.contentComplete(false);
+        }
+    }
+
+    /**
+     * 按头字段选择内容的解析方式，没有内容时立即结束
+     */
+    private void startContent() {
+        if (this.contentLength > 0) {
+            this.state = State.FIXED_CONTENT;
+        } else if (this.contentLength == 0 || this.transferEncoding == null) {
+            // 请求没有 Content-Length 和 Transfer-Encoding 时内容长度为 0
+            this.contentComplete(false);
+        } else if (Value.CHUNKED.is(this.transferEncoding)) {
+            this.state = State.CHUNKED_CONTENT;
+        } else {
+            throw new BadMessageException(
+                "Transfer-Encoding and Content-Length must exist one"
+            );
+        }
+    }
+
+    /**
+     * 内容结束，流式读取的请求体以此作为 EOF，需要在最后一个字节解析后立即调用
+     * <p>
+     * 有尾字段时等尾字段解析完成后再通知，处理器可以在 EOF 后读取尾字段
+     *
+     * @param trailer 是否还需要解析尾字段，只有分块内容可以有尾字段
+     */
+    private void contentComplete(final boolean trailer) {
+        this.state = trailer ? State.TRAILER : State.END_CONTENT;
+        if (!trailer) {
+            this.handler.contentComplete();
+        }
+    }
+
     private void addHeader() {
-        final String headerName = this.string.toString();
+        final String name = this.string.toString();
+        final HttpHeader header = HttpHeader.from(name);
+        this.addHeader(
+                this.newField(
+                        header,
+                        header != null ? header.asString() : name,
+                        this.value.toString()
+                    )
+            );
+    }
+
+    private HttpField newField(
+        final HttpHeader header,
+        final String name,
+        final String value
+    ) {
+        final HttpField field = new HttpField(
+            header,
+            name,
+            new ArrayList<>(1)
+        );
+        field.addValue(value);
+        return field;
+    }
 
+    /**
+     * 添加解析出的头字段
+     *
+     * @param parsed 只有一个值的字段，可能是缓存的只读字段
+     */
+    private void addHeader(final HttpField parsed) {
         if (
             this.headerState == State.TRAILER &&
-            !this.trailers.contains(headerName)
+            !this.trailers.contains(parsed.getLowerCaseName())
         ) {
             throw new BadMessageException("Header is not defined in Trailer");
         }
 
-        final String headerValue = this.value.toString();
-        HttpField field = this.handler.getHttpField(headerName);
+        HttpField field =
+            this.headerState != State.TRAILER
+                ? this.handler.getHttpField(parsed.getName())
+                : this.handler.getHttpTrailer(parsed.getName());
         if (field == null) {
-            field = new HttpField(headerName);
+            field = parsed;
+        } else {
+            // 缓存的字段是共享的，需要复制后才能追加值
+            if (field.isReadOnly()) {
+                field = field.copy();
+            }
+            field.addValue(parsed.getValue());
         }
-        field.addValue(headerValue);
         if (this.headerState != State.TRAILER) {
             this.handler.addHttpHeader(field);
         } else {
             this.handler.addHttpTrailer(field);
         }
 
-        switch (headerName.toLowerCase()) {
+        final HttpHeader header = parsed.getHeader();
+        switch (header == null ? HttpHeader.UNKNOWN : header) {
             case CONTENT_LENGTH:
                 if (this.transferEncoding != null) {
                     throw new BadMessageException(
@@ -584,9 +1050,8 @@ public class HttpParser {
                 if (this.contentLength >= 0) {
                     throw new BadMessageException("Multiple Content-Length");
                 }
-                try {
-                    this.contentLength = Integer.parseInt(headerValue);
-                } catch (final NumberFormatException e) {
+                this.contentLength = HttpTokens.parseLength(parsed.getValue());
+                if (this.contentLength < 0) {
                     throw new BadMessageException(
                         "Invalid Content-Length Value"
                     );
@@ -601,10 +1066,12 @@ public class HttpParser {
                 if (this.transferEncoding != null) {
                     throw new BadMessageException("Multiple Transfer-Encoding");
                 }
-                this.transferEncoding = headerValue;
+                this.transferEncoding = parsed.getValue();
                 break;
             case TRAILER:
-                this.trailers.addAll(field.getValues());
+                for (final String trailer : field.getValues()) {
+                    this.trailers.add(trailer.toLowerCase());
+                }
                 break;
             default:
             //
@@ -629,15 +1096,18 @@ public class HttpParser {
     }
 
     private void parseCrLf(final ByteBufferStream buffer) {
-        if (
-            (this.trailers.isEmpty() && this.state == State.END_CONTENT) ||
-            this.state == State.TRAILER
-        ) {
-            final ByteBufferStream copy = buffer.duplicate();
-            while (buffer.hasRemaining()) {
-                final HttpTokens.Token next = this.next(copy);
-                if (next != null && next.getType() == Type.LF) {
-                    this.next(buffer);
+        if (this.state == State.END_CONTENT || this.state == State.TRAILER) {
+            // 使用绝对位置检查，不需要复制 Buffer
+            final ByteBuffer bytes = buffer.getBuffer();
+            while (bytes.hasRemaining()) {
+                final int position = bytes.position();
+                final byte b = bytes.get(position);
+                if (b == HttpTokens.LINE_FEED) {
+                    this.hasCr = false;
+                    bytes.position(position + 1);
+                } else if (b == HttpTokens.CARRIAGE_RETURN && !this.hasCr) {
+                    this.hasCr = true;
+                    bytes.position(position + 1);
                 } else {
                     break;
                 }
@@ -645,13 +1115,19 @@ public class HttpParser {
         }
     }
 
-    private void addLength(final Consumer<Integer> consumer) {
-        this.length++;
+    private void addHeaderLength(final int length) {
+        this.length += length;
+        this.headersLength += length;
         if (
-            this.maxHeaderByteLength > 0 &&
-            this.length > this.maxHeaderByteLength
+            (this.maxHeaderLength > 0 && this.length > this.maxHeaderLength) ||
+            (
+                this.maxHeadersLength > 0 &&
+                this.headersLength > this.maxHeadersLength
+            )
         ) {
-            consumer.accept(this.length);
+            throw new BadMessageException(
+                HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE
+            );
         }
     }
 
@@ -745,11 +1221,24 @@ public class HttpParser {
 
         /**
          * 添加 Http 头
+         * <p>
+         * 字段的值可能延迟解码并直接引用解析的 Buffer，HttpParser release 前不能覆盖 Buffer 的内容
          *
          * @param field 头字段
          */
         void addHttpHeader(HttpField field);
 
+        /**
+         * 获取 Http 尾字段，用于合并同名的尾字段
+         *
+         * @param name 字段名称
+         *
+         * @return Http 尾字段
+         */
+        default HttpField getHttpTrailer(final String name) {
+            return this.getHttpField(name);
+        }
+
         /**
          * 添加 Http 尾
          *
@@ -759,6 +1248,8 @@ public class HttpParser {
 
         /**
          * 添加内容
+         * <p>
+         * 内容为共享读取 Buffer 的视图（已 retain），使用完毕后需要 close 释放引用
          *
          * @param buffer ByteBuffer
          */
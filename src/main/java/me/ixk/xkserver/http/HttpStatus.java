@@ -5,8 +5,13 @@
 
 package me.ixk.xkserver.http;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
  * 响应码
+ * <p>
+ * 每个响应码预先生成 HTTP/1.0 和 HTTP/1.1 的状态行字节，写出响应时直接复制
  *
  * @author Otstar Lin
  * @date 2020/10/14 上午 9:15
@@ -284,13 +289,50 @@ public enum HttpStatus {
      */
     NETWORK_CONNECT_TIMEOUT_ERROR(599, "Network Connect Timeout Error"),;
 
+    private static final HttpStatus[] CODES = new HttpStatus[600];
+
+    static {
+        for (final HttpStatus status : values()) {
+            // 相同的响应码保留第一个
+            if (CODES[status.value] == null) {
+                CODES[status.value] = status;
+            }
+        }
+    }
+
     private final int value;
 
     private final String reasonPhrase;
 
+    /**
+     * 按 HttpVersion 序号保存的状态行，HTTP/0.9 和 HTTP/2 没有文本状态行
+     */
+    private final ByteBuffer[] statusLines;
+
     HttpStatus(int value, String reasonPhrase) {
         this.value = value;
         this.reasonPhrase = reasonPhrase;
+        this.statusLines = new ByteBuffer[HttpVersion.values().length];
+        for (final HttpVersion version : HttpVersion.values()) {
+            if (
+                version == HttpVersion.HTTP_1_0 ||
+                version == HttpVersion.HTTP_1_1
+            ) {
+                this.statusLines[version.ordinal()] =
+                    ByteBuffer
+                        .wrap(
+                            (
+                                version.asString() +
+                                " " +
+                                value +
+                                " " +
+                                reasonPhrase +
+                                "\r\n"
+                            ).getBytes(StandardCharsets.ISO_8859_1)
+                        )
+                        .asReadOnlyBuffer();
+            }
+        }
     }
 
     public int getValue() {
@@ -301,6 +343,18 @@ public enum HttpStatus {
         return reasonPhrase;
     }
 
+    /**
+     * 获取状态行，如 "HTTP/1.1 200 OK\r\n"
+     *
+     * @param version HTTP 版本
+     *
+     * @return 共享内容的只读 Buffer，position 和 limit 独立，HTTP/0.9 和 HTTP/2 返回 null
+     */
+    public ByteBuffer getStatusLine(final HttpVersion version) {
+        final ByteBuffer line = this.statusLines[version.ordinal()];
+        return line == null ? null : line.duplicate();
+    }
+
     @Override
     public String toString() {
         return this.value + " " + name();
@@ -317,12 +371,10 @@ public enum HttpStatus {
     }
 
     public static HttpStatus resolve(int statusCode) {
-        for (HttpStatus status : values()) {
-            if (status.value == statusCode) {
-                return status;
-            }
+        if (statusCode < 0 || statusCode >= CODES.length) {
+            return null;
         }
-        return null;
+        return CODES[statusCode];
     }
 
     public static HttpStatus valueOf(int statusCode, String reasonPhrase) {
@@ -5,8 +5,14 @@
 
 package me.ixk.xkserver.http;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
 /**
  * Ascii 码映射
+ * <p>
+ * 除了 Token 外还有一张 byte[256] 的字符类别表，批量扫描时直接按位判断，长区间使用 SWAR 每次检查 8 个字节
  *
  * @author Otstar Lin
  * @date 2020/10/22 下午 9:58
@@ -19,6 +25,29 @@ public class HttpTokens {
     static final byte SPACE = 0x20;
     static final byte[] CRLF = { CARRIAGE_RETURN, LINE_FEED };
 
+    /**
+     * tchar，头字段名称和方法中的字符
+     */
+    public static final byte TOKEN_CHAR = 0x01;
+    /**
+     * 请求目标中的字符
+     */
+    public static final byte URI_CHAR = 0x02;
+    /**
+     * 头字段值中的字符
+     */
+    public static final byte VALUE_CHAR = 0x04;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long CTL_LIMITS = 0x2020202020202020L;
+    private static final long DELS = 0x7f7f7f7f7f7f7f7fL;
+    private static final VarHandle LONG_VIEW =
+        MethodHandles.byteArrayViewVarHandle(
+            long[].class,
+            ByteOrder.LITTLE_ENDIAN
+        );
+
     public enum Type {
         /**
          * 控制字符
@@ -110,6 +139,10 @@ public class HttpTokens {
     }
 
     public static final Token[] TOKENS = new Token[256];
+    /**
+     * 字符类别表，按位保存 TOKEN_CHAR、URI_CHAR 和 VALUE_CHAR
+     */
+    public static final byte[] CLASSES = new byte[256];
 
     static {
         for (int b = 0; b < 256; b++) {
@@ -173,7 +206,163 @@ public class HttpTokens {
                         TOKENS[b] = new Token((byte) b, Type.CNTL);
                     }
             }
+            CLASSES[b] = classOf(TOKENS[b].getType());
+        }
+    }
+
+    private static byte classOf(final Type type) {
+        switch (type) {
+            case ALPHA:
+            case DIGIT:
+            case TCHAR:
+                return TOKEN_CHAR | URI_CHAR | VALUE_CHAR;
+            case VCHAR:
+            case COLON:
+            case OTEXT:
+                return URI_CHAR | VALUE_CHAR;
+            case SPACE:
+            case HTAB:
+                return VALUE_CHAR;
+            default:
+                return 0;
+        }
+    }
+
+    public static boolean is(final byte b, final byte type) {
+        return (CLASSES[b & 0xff] & type) != 0;
+    }
+
+    /**
+     * 查找第一个不属于指定类别的字符
+     *
+     * @param type 字符类别，可以按位组合
+     *
+     * @return 下标，全部属于该类别时返回 end
+     */
+    public static int scan(
+        final byte[] bytes,
+        final int start,
+        final int end,
+        final byte type
+    ) {
+        int i = start;
+        while (i < end && (CLASSES[bytes[i] & 0xff] & type) != 0) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 查找头字段值中第一个非法字符（除 HTAB 外的控制字符和 DEL）
+     * <p>
+     * 每次读取 8 个字节，整个 long 中不包含小于 0x20 和等于 0x7f 的字节时直接跳过，否则逐字节查表
+     *
+     * @return 下标，全部合法时返回 end
+     */
+    public static int scanValue(
+        final byte[] bytes,
+        final int start,
+        final int end
+    ) {
+        int i = start;
+        for (final int last = end - Long.BYTES; i <= last; i += Long.BYTES) {
+            final long word = (long) LONG_VIEW.get(bytes, i);
+            final long del = word ^ DELS;
+            final long suspect =
+                (((word - CTL_LIMITS) & ~word) | ((del - ONES) & ~del)) & HIGHS;
+            if (suspect != 0) {
+                // 可能只是 HTAB，逐字节确认
+                final int index = scan(bytes, i, i + Long.BYTES, VALUE_CHAR);
+                if (index < i + Long.BYTES) {
+                    return index;
+                }
+            }
+        }
+        return scan(bytes, i, end, VALUE_CHAR);
+    }
+
+    /**
+     * 查找字节的位置，每次比较 8 个字节
+     *
+     * @return 下标，不存在时返回 -1
+     */
+    public static int indexOf(
+        final byte[] bytes,
+        final int position,
+        final int limit,
+        final byte b
+    ) {
+        final long pattern = ONES * (b & 0xff);
+        int i = position;
+        for (final int last = limit - Long.BYTES; i <= last; i += Long.BYTES) {
+            final long word = (long) LONG_VIEW.get(bytes, i) ^ pattern;
+            final long found = (word - ONES) & ~word & HIGHS;
+            if (found != 0) {
+                // 小端序，最低的标记位就是第一个相等的字节
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < limit; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 查找 LF 的位置
+     *
+     * @return LF 的下标，不存在时返回 -1
+     */
+    public static int indexOfLf(
+        final byte[] bytes,
+        final int position,
+        final int limit
+    ) {
+        return indexOf(bytes, position, limit, LINE_FEED);
+    }
+
+    /**
+     * 获取 16 进制字符的值
+     *
+     * @return 值，不是 16 进制字符时返回 -1
+     */
+    public static int hexValue(final byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * 解析非负的 10 进制长度，如 Content-Length
+     *
+     * @return 长度，格式错误或溢出时返回 -1
+     */
+    public static long parseLength(final CharSequence value) {
+        final int length = value.length();
+        if (length == 0) {
+            return -1;
+        }
+        long result = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            if (result > (Long.MAX_VALUE - (c - '0')) / 10) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
         }
+        return result;
     }
 
     public static Token parse(byte ch) {
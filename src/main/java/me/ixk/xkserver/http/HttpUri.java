@@ -5,8 +5,13 @@
 
 package me.ixk.xkserver.http;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * HttpUri
+ * <p>
+ * 解析时只记录 Scheme、Host、Path 等部分在原始 Uri 中的位置，访问时才创建 String，大部分请求只会读取 Path
  *
  * @author Otstar Lin
  * @date 2020/10/27 下午 3:48
@@ -60,87 +65,182 @@ public class HttpUri {
         ASTERISK,
     }
 
-    private String scheme;
-    private String user;
-    private String host;
+    private static final int SCHEME = 0;
+    private static final int USER = 1;
+    private static final int HOST = 2;
+    private static final int PATH = 3;
+    private static final int PARAM = 4;
+    private static final int QUERY = 5;
+    private static final int FRAGMENT = 6;
+    private static final int DECODED_PATH = 7;
+    private static final int COMPONENTS = 8;
+
+    /**
+     * 原始 Uri，字节数组或 String
+     */
+    private byte[] bytes;
+    private String source;
+    private int offset;
+    private int length;
+
+    /**
+     * 各个部分在原始 Uri 中的区间 [start, end)，start 为 -1 时不存在
+     */
+    private final int[] marks = new int[COMPONENTS << 1];
+    /**
+     * 已经解码或者手动设置的部分
+     */
+    private final String[] components = new String[COMPONENTS];
     private int port;
-    private String path;
-    private String param;
-    private String query;
-    private String fragment;
     private String uri;
-    private String decodedPath;
-
-    public HttpUri() {}
+    private boolean modified = false;
+    /**
+     * Path 包含编码、. 或参数，需要解码后才能得到 DecodedPath
+     */
+    private boolean decodePath = false;
+
+    public HttpUri() {
+        Arrays.fill(this.marks, -1);
+    }
 
     public HttpUri(final String uri) {
+        this();
         this.uri = uri;
-        this.parse(uri);
+        this.source = uri;
+        this.length = uri.length();
+        this.parse();
+    }
+
+    /**
+     * 直接从请求行的字节区间创建，只记录各个部分的位置，访问时才解码为 String
+     * <p>
+     * 在各个部分被访问或调用 {@link #detach()} 之前，字节数组对应区间的内容不能被修改
+     */
+    public HttpUri(final byte[] bytes, final int offset, final int length) {
+        this();
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.parse();
     }
 
     public HttpUri(final HttpUri uri) {
-        scheme = uri.getScheme();
-        user = uri.getUser();
-        host = uri.getHost();
-        port = uri.getPort();
-        path = uri.getPath();
-        param = uri.getParam();
-        query = uri.getQuery();
-        fragment = uri.getFragment();
-        this.uri = null;
-        decodedPath = uri.getDecodedPath();
+        this();
+        for (int i = 0; i < COMPONENTS; i++) {
+            this.components[i] = uri.component(i);
+        }
+        this.components[DECODED_PATH] = uri.getDecodedPath();
+        this.port = uri.getPort();
+        this.modified = true;
+    }
+
+    /**
+     * 复制引用的字节区间，使 Uri 不再依赖请求的 Buffer，Buffer 被释放前需要调用
+     */
+    void detach() {
+        if (this.bytes == null) {
+            return;
+        }
+        this.bytes =
+            Arrays.copyOfRange(
+                this.bytes,
+                this.offset,
+                this.offset + this.length
+            );
+        this.offset = 0;
     }
 
     public void setScheme(final String scheme) {
-        this.scheme = scheme;
+        this.setComponent(SCHEME, scheme);
     }
 
     public void setUser(final String user) {
-        this.user = user;
+        this.setComponent(USER, user);
     }
 
     public void setHost(final String host) {
-        this.host = host;
+        this.setComponent(HOST, host);
     }
 
     public void setPort(final int port) {
         this.port = port;
+        this.modified();
+    }
+
+    /**
+     * 使用 Host 头字段补全 Host 和端口，不使用 split
+     *
+     * @param hostAndPort 形如 host、host:port、[ipv6]:port
+     * @param defaultPort 没有端口时使用的端口
+     */
+    public void setAuthority(final String hostAndPort, final int defaultPort) {
+        final int length = hostAndPort.length();
+        int colon = -1;
+        if (length > 0 && hostAndPort.charAt(0) == '[') {
+            final int close = hostAndPort.indexOf(']');
+            if (close < 0) {
+                throw new IllegalArgumentException(
+                    "No closing ']' for ipv6 in " + hostAndPort
+                );
+            }
+            if (close + 1 < length) {
+                if (hostAndPort.charAt(close + 1) != ':') {
+                    throw new IllegalArgumentException("Bad authority");
+                }
+                colon = close + 1;
+            }
+        } else {
+            colon = hostAndPort.lastIndexOf(':');
+        }
+        if (colon < 0) {
+            this.setHost(hostAndPort);
+            this.setPort(defaultPort);
+        } else {
+            this.setHost(hostAndPort.substring(0, colon));
+            this.setPort(parsePort(hostAndPort, colon + 1, length));
+        }
     }
 
     public void setPath(final String path) {
-        this.path = path;
+        this.setComponent(PATH, path);
+        this.components[DECODED_PATH] = null;
+        this.marks[DECODED_PATH << 1] = -1;
+        this.decodePath = path != null;
     }
 
     public void setParam(final String param) {
-        this.param = param;
+        this.setComponent(PARAM, param);
     }
 
     public void setQuery(final String query) {
-        this.query = query;
+        this.setComponent(QUERY, query);
     }
 
     public void setFragment(final String fragment) {
-        this.fragment = fragment;
+        this.setComponent(FRAGMENT, fragment);
     }
 
     public void setUri(final String uri) {
         this.uri = uri;
+        this.modified = false;
     }
 
     public void setDecodedPath(final String decodedPath) {
-        this.decodedPath = decodedPath;
+        this.components[DECODED_PATH] = decodedPath;
+        this.marks[DECODED_PATH << 1] = -1;
+        this.decodePath = false;
     }
 
     public String getScheme() {
-        return scheme;
+        return this.component(SCHEME);
     }
 
     public String getUser() {
-        return user;
+        return this.component(USER);
     }
 
     public String getHost() {
-        return host;
+        return this.component(HOST);
     }
 
     public int getPort() {
@@ -148,46 +248,80 @@ public class HttpUri {
     }
 
     public String getPath() {
-        return path;
+        return this.component(PATH);
     }
 
     public String getParam() {
-        return param;
+        return this.component(PARAM);
     }
 
     public String getQuery() {
-        return query;
+        return this.component(QUERY);
     }
 
     public String getFragment() {
-        return fragment;
+        return this.component(FRAGMENT);
     }
 
     public String getUri() {
+        if (this.uri == null && !this.modified) {
+            this.uri = this.substring(0, this.length);
+        }
         return uri;
     }
 
     public boolean isAbsolute() {
-        return scheme != null && !scheme.isEmpty();
+        return this.has(SCHEME) && this.length(SCHEME) > 0;
     }
 
+    /**
+     * 不需要解码时直接截取 Path，否则从解码缓存中获取
+     *
+     * @return 解码并规范化后的路径，不合法时返回 null
+     */
     public String getDecodedPath() {
-        return decodedPath;
+        String decoded = this.component(DECODED_PATH);
+        if (decoded == null && this.decodePath) {
+            final int start = this.marks[PATH << 1];
+            if (start >= 0 && this.bytes != null) {
+                decoded =
+                    PathCache
+                        .defaultCache()
+                        .get(
+                            this.bytes,
+                            this.offset + start,
+                            this.marks[(PATH << 1) + 1] - start
+                        );
+            } else {
+                final String path = this.getPath();
+                decoded =
+                    path == null ? null : PathCache.defaultCache().get(path);
+            }
+            this.components[DECODED_PATH] = decoded;
+            this.decodePath = false;
+        }
+        return decoded;
     }
 
     public String getAuthority() {
         if (port > 0) {
-            return host + ":" + port;
+            return this.getHost() + ":" + port;
         }
-        return host;
+        return this.getHost();
     }
 
     public boolean hasAuthority() {
-        return host != null;
+        return this.has(HOST);
     }
 
     public String asString() {
-        if (uri == null) {
+        if (this.getUri() == null) {
+            final String scheme = this.getScheme();
+            final String host = this.getHost();
+            final String user = this.getUser();
+            final String path = this.getPath();
+            final String query = this.getQuery();
+            final String fragment = this.getFragment();
             final StringBuilder out = new StringBuilder();
             if (scheme != null) {
                 out.append(scheme).append(':');
@@ -211,29 +345,118 @@ public class HttpUri {
             if (fragment != null) {
                 out.append('#').append(fragment);
             }
-            if (out.length() > 0) {
-                uri = out.toString();
-            } else {
-                uri = "";
-            }
+            uri = out.toString();
         }
         return uri;
     }
 
     @Override
     public String toString() {
-        return uri;
+        return this.asString();
+    }
+
+    private boolean has(final int component) {
+        return (
+            this.components[component] != null ||
+            this.marks[component << 1] >= 0
+        );
+    }
+
+    private int length(final int component) {
+        final String value = this.components[component];
+        if (value != null) {
+            return value.length();
+        }
+        return this.marks[(component << 1) + 1] - this.marks[component << 1];
+    }
+
+    private String component(final int component) {
+        String value = this.components[component];
+        if (value == null) {
+            final int start = this.marks[component << 1];
+            if (start >= 0) {
+                final int end = this.marks[(component << 1) + 1];
+                value = this.substring(start, end);
+                this.components[component] = value;
+            }
+        }
+        return value;
+    }
+
+    private void setComponent(final int component, final String value) {
+        this.components[component] = value;
+        this.marks[component << 1] = -1;
+        this.modified();
+    }
+
+    /**
+     * 修改后不再使用原始 Uri，asString 时重新拼接
+     */
+    private void modified() {
+        this.modified = true;
+        this.uri = null;
     }
 
-    private void parse(final String uri) {
+    private void mark(final int component, final int start, final int end) {
+        this.marks[component << 1] = start;
+        this.marks[(component << 1) + 1] = end;
+    }
+
+    private char charAt(final int index) {
+        if (this.bytes != null) {
+            return (char) (this.bytes[this.offset + index] & 0xff);
+        }
+        return this.source.charAt(index);
+    }
+
+    private String substring(final int start, final int end) {
+        if (this.bytes != null) {
+            return new String(
+                this.bytes,
+                this.offset + start,
+                end - start,
+                StandardCharsets.ISO_8859_1
+            );
+        }
+        if (this.source != null) {
+            return this.source.substring(start, end);
+        }
+        return null;
+    }
+
+    private static int parsePort(final String value) {
+        return parsePort(value, 0, value.length());
+    }
+
+    private static int parsePort(
+        final String value,
+        final int start,
+        final int end
+    ) {
+        if (start >= end || end - start > 5) {
+            throw new IllegalArgumentException("Bad port");
+        }
+        int port = 0;
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Bad port");
+            }
+            port = port * 10 + (c - '0');
+        }
+        return port;
+    }
+
+    private void parse() {
         State state = State.START;
         boolean encoded = false;
-        final int end = uri.length();
+        final int end = this.length;
+        int hostMark = -1;
         int mark = 0;
         int pathMark = 0;
         char last = '/';
         for (int i = 0; i < end; i++) {
-            char c = uri.charAt(i);
+            char c = this.charAt(i);
 
             switch (state) {
                 case START: {
@@ -248,7 +471,7 @@ public class HttpUri {
                             break;
                         case '?':
                             // assume empty path (if seen at start)
-                            path = "";
+                            this.mark(PATH, i, i);
                             mark = i + 1;
                             state = State.QUERY;
                             break;
@@ -257,7 +480,7 @@ public class HttpUri {
                             state = State.FRAGMENT;
                             break;
                         case '*':
-                            path = "*";
+                            this.mark(PATH, i, i + 1);
                             state = State.ASTERISK;
                             break;
                         case '.':
@@ -267,7 +490,7 @@ public class HttpUri {
                             break;
                         default:
                             mark = i;
-                            if (scheme == null) {
+                            if (!this.has(SCHEME)) {
                                 state = State.SCHEME_OR_PATH;
                             } else {
                                 pathMark = i;
@@ -282,7 +505,7 @@ public class HttpUri {
                     switch (c) {
                         case ':':
                             // must have been a scheme
-                            scheme = uri.substring(mark, i);
+                            this.mark(SCHEME, mark, i);
                             // Start again with scheme set
                             state = State.START;
                             break;
@@ -297,7 +520,7 @@ public class HttpUri {
                             break;
                         case '?':
                             // must have been in a path
-                            path = uri.substring(mark, i);
+                            this.mark(PATH, mark, i);
                             mark = i + 1;
                             state = State.QUERY;
                             break;
@@ -308,7 +531,8 @@ public class HttpUri {
                             break;
                         case '#':
                             // must have been in a path
-                            path = uri.substring(mark, i);
+                            this.mark(PATH, mark, i);
+                            mark = i + 1;
                             state = State.FRAGMENT;
                             break;
                         default:
@@ -319,8 +543,8 @@ public class HttpUri {
                 case HOST_OR_PATH: {
                     switch (c) {
                         case '/':
-                            host = "";
-                            mark = i + 1;
+                            mark = hostMark = i + 1;
+                            this.mark(HOST, mark, mark);
                             state = State.HOST;
                             break;
                         case '@':
@@ -348,24 +572,25 @@ public class HttpUri {
                 case HOST: {
                     switch (c) {
                         case '/':
-                            host = uri.substring(mark, i);
+                            this.mark(HOST, mark, i);
                             pathMark = mark = i;
                             state = State.PATH;
                             break;
                         case ':':
                             if (i > mark) {
-                                host = uri.substring(mark, i);
+                                this.mark(HOST, mark, i);
                             }
                             mark = i + 1;
                             state = State.PORT;
                             break;
                         case '@':
-                            if (user != null) {
+                            if (this.has(USER)) {
                                 throw new IllegalArgumentException(
-                                    "Bad authority");
+                                    "Bad authority"
+                                );
                             }
-                            user = uri.substring(mark, i);
-                            mark = i + 1;
+                            this.mark(USER, mark, i);
+                            mark = hostMark = i + 1;
                             break;
                         case '[':
                             state = State.IPV6;
@@ -379,10 +604,17 @@ public class HttpUri {
                     switch (c) {
                         case '/':
                             throw new IllegalArgumentException(
-                                "No closing ']' for ipv6 in " + uri);
+                                "No closing ']' for ipv6 in " + this.getUri()
+                            );
                         case ']':
-                            c = uri.charAt(++i);
-                            host = uri.substring(mark, i);
+                            this.mark(HOST, mark, ++i);
+                            if (i == end) {
+                                // 没有端口和路径
+                                mark = i;
+                                state = State.HOST;
+                                break;
+                            }
+                            c = this.charAt(i);
                             if (c == ':') {
                                 mark = i + 1;
                                 state = State.PORT;
@@ -399,15 +631,16 @@ public class HttpUri {
                 }
                 case PORT: {
                     if (c == '@') {
-                        if (user != null) {
+                        if (this.has(USER)) {
                             throw new IllegalArgumentException("Bad authority");
                         }
                         // It wasn't a port, but a password!
-                        user = host + ":" + uri.substring(mark, i);
-                        mark = i + 1;
+                        this.mark(USER, hostMark, i);
+                        mark = hostMark = i + 1;
+                        this.mark(HOST, mark, mark);
                         state = State.HOST;
                     } else if (c == '/') {
-                        port = Integer.parseInt(uri.substring(mark, i));
+                        port = parsePort(this.substring(mark, i));
                         pathMark = mark = i;
                         state = State.PATH;
                     }
@@ -420,12 +653,12 @@ public class HttpUri {
                             state = State.PARAM;
                             break;
                         case '?':
-                            path = uri.substring(pathMark, i);
+                            this.mark(PATH, pathMark, i);
                             mark = i + 1;
                             state = State.QUERY;
                             break;
                         case '#':
-                            path = uri.substring(pathMark, i);
+                            this.mark(PATH, pathMark, i);
                             mark = i + 1;
                             state = State.FRAGMENT;
                             break;
@@ -445,14 +678,14 @@ public class HttpUri {
                 case PARAM: {
                     switch (c) {
                         case '?':
-                            path = uri.substring(pathMark, i);
-                            param = uri.substring(mark, i);
+                            this.mark(PATH, pathMark, i);
+                            this.mark(PARAM, mark, i);
                             mark = i + 1;
                             state = State.QUERY;
                             break;
                         case '#':
-                            path = uri.substring(pathMark, i);
-                            param = uri.substring(mark, i);
+                            this.mark(PATH, pathMark, i);
+                            this.mark(PARAM, mark, i);
                             mark = i + 1;
                             state = State.FRAGMENT;
                             break;
@@ -463,6 +696,7 @@ public class HttpUri {
                             break;
                         case ';':
                             // multiple parameters
+                            encoded = true;
                             mark = i + 1;
                             break;
                         default:
@@ -472,7 +706,7 @@ public class HttpUri {
                 }
                 case QUERY: {
                     if (c == '#') {
-                        query = uri.substring(mark, i);
+                        this.mark(QUERY, mark, i);
                         mark = i + 1;
                         state = State.FRAGMENT;
                     }
@@ -496,45 +730,49 @@ public class HttpUri {
             case ASTERISK:
                 break;
             case SCHEME_OR_PATH:
-                path = uri.substring(mark, end);
+                this.mark(PATH, mark, end);
                 break;
             case HOST_OR_PATH:
-                path = uri.substring(mark, end);
+                this.mark(PATH, mark, end);
                 break;
             case HOST:
                 if (end > mark) {
-                    host = uri.substring(mark, end);
+                    this.mark(HOST, mark, end);
                 }
                 break;
             case IPV6:
                 throw new IllegalArgumentException(
-                    "No closing ']' for ipv6 in " + uri);
+                        "No closing ']' for ipv6 in " + this.getUri()
+                );
             case PORT:
-                port = Integer.parseInt(uri.substring(mark, end));
+                port = parsePort(this.substring(mark, end));
                 break;
             case PARAM:
-                path = uri.substring(pathMark, end);
-                param = uri.substring(mark, end);
+                this.mark(PATH, pathMark, end);
+                this.mark(PARAM, mark, end);
                 break;
             case PATH:
-                path = uri.substring(pathMark, end);
+                this.mark(PATH, pathMark, end);
                 break;
             case QUERY:
-                query = uri.substring(mark, end);
+                this.mark(QUERY, mark, end);
                 break;
             case FRAGMENT:
-                fragment = uri.substring(mark, end);
+                this.mark(FRAGMENT, mark, end);
                 break;
             default:
                 throw new IllegalStateException(state.toString());
         }
 
+        this.decodePath = encoded;
         if (!encoded) {
-            if (param == null) {
-                decodedPath = path;
+            final int pathStart = this.marks[PATH << 1];
+            final int paramStart = this.marks[PARAM << 1];
+            if (paramStart < 0) {
+                final int pathEnd = this.marks[(PATH << 1) + 1];
+                this.mark(DECODED_PATH, pathStart, pathEnd);
             } else {
-                decodedPath = path
-                    .substring(0, path.length() - param.length() - 1);
+                this.mark(DECODED_PATH, pathStart, paramStart - 1);
             }
         }
     }
@@ -6,6 +6,7 @@
 package me.ixk.xkserver.http;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -55,20 +56,11 @@ public enum HttpVersion {
             bytes[position + 4] == '/' &&
             bytes[position + 6] == '.' &&
             Character.isWhitespace((char) bytes[position + 8]) &&
-            (
-                (
-                    bytes[position] == 'H' &&
-                    bytes[position + 1] == 'T' &&
-                    bytes[position + 2] == 'T' &&
-                    bytes[position + 3] == 'P'
-                ) ||
-                (
-                    bytes[position] == 'h' &&
-                    bytes[position + 1] == 't' &&
-                    bytes[position + 2] == 't' &&
-                    bytes[position + 3] == 'p'
-                )
-            )
+            // HTTP-name 区分大小写
+            bytes[position] == 'H' &&
+            bytes[position + 1] == 'T' &&
+            bytes[position + 2] == 'T' &&
+            bytes[position + 3] == 'P'
         ) {
             switch (bytes[position + 5]) {
                 case '1':
@@ -94,24 +86,60 @@ public enum HttpVersion {
     }
 
     public static HttpVersion bytesToVersion(final ByteBuffer buffer) {
+        return bytesToVersion(buffer, buffer.position(), buffer.limit());
+    }
+
+    /**
+     * 按绝对位置识别版本，不改变 Buffer 的 position
+     * <p>
+     * 直接内存的 Buffer 没有数组，先复制版本和其后的空白字符再识别
+     *
+     * @param buffer   Buffer
+     * @param position 开始位置
+     * @param limit    结束位置
+     *
+     * @return 版本，未知或不完整时返回 null
+     */
+    public static HttpVersion bytesToVersion(
+        final ByteBuffer buffer,
+        final int position,
+        final int limit
+    ) {
         if (buffer.hasArray()) {
             return bytesToVersion(
                 buffer.array(),
-                buffer.arrayOffset() + buffer.position(),
-                buffer.arrayOffset() + buffer.limit()
+                buffer.arrayOffset() + position,
+                buffer.arrayOffset() + limit
             );
         }
-        return null;
+        if (limit - position < 9) {
+            return null;
+        }
+        final byte[] bytes = new byte[9];
+        buffer.get(position, bytes, 0, 9);
+        return bytesToVersion(bytes, 0, 9);
     }
 
     private final String string;
+    private final ByteBuffer buffer;
     private final int version;
 
     HttpVersion(final String s, final int version) {
         string = s;
+        buffer =
+            ByteBuffer
+                .wrap(s.getBytes(StandardCharsets.ISO_8859_1))
+                .asReadOnlyBuffer();
         this.version = version;
     }
 
+    /**
+     * @return 预先编码的字节，共享内容的只读 Buffer，position 和 limit 独立
+     */
+    public ByteBuffer toBuffer() {
+        return buffer.duplicate();
+    }
+
     public int getVersion() {
         return version;
     }
@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import me.ixk.xkserver.io.ByteBufferPool;
+import me.ixk.xkserver.io.ByteBufferStream;
+import me.ixk.xkserver.io.InflaterPool;
+
+/**
+ * GZIP / Deflate 解码器
+ * <p>
+ * 内容块可以在任意位置分割，GZIP 头部和尾部逐字节解析，压缩数据直接交给对象池中的 Inflater，输出到对象池申请的 Buffer
+ * <p>
+ * 解码后的内容超过上限时返回 413，防止压缩炸弹
+ *
+ * @author Otstar Lin
+ * @date 2021/1/18 上午 10:35
+ */
+public class InflaterContentDecoder implements ContentDecoder {
+    private static final int DEFAULT_CHUNK_SIZE = 8192;
+    private static final int GZIP_ID1 = 0x1f;
+    private static final int GZIP_ID2 = 0x8b;
+    private static final int GZIP_DEFLATE = 8;
+    private static final int GZIP_HEADER_LENGTH = 10;
+    private static final int GZIP_TRAILER_LENGTH = 8;
+    private static final int FHCRC = 0x02;
+    private static final int FEXTRA = 0x04;
+    private static final int FNAME = 0x08;
+    private static final int FCOMMENT = 0x10;
+
+    private enum State {
+        /**
+         * GZIP 固定头部
+         */
+        HEADER,
+        /**
+         * 扩展字段长度
+         */
+        EXTRA_LENGTH,
+        /**
+         * 扩展字段
+         */
+        EXTRA,
+        /**
+         * 文件名
+         */
+        NAME,
+        /**
+         * 注释
+         */
+        COMMENT,
+        /**
+         * 头部 CRC
+         */
+        HCRC,
+        /**
+         * 压缩数据
+         */
+        DATA,
+        /**
+         * GZIP 尾部
+         */
+        TRAILER,
+        /**
+         * 结束
+         */
+        END,
+    }
+
+    private final boolean gzip;
+    private final long maxInflatedSize;
+    private final int chunkSize;
+    private final ByteBufferPool bufferPool;
+    private final InflaterPool inflaterPool;
+    private final CRC32 crc = new CRC32();
+    private Inflater inflater;
+    private State state;
+    private int flags = 0;
+    private int fieldLength = 0;
+    private long value = 0;
+    private long inflatedSize = 0;
+    private long memberSize = 0;
+    private boolean started = false;
+
+    public InflaterContentDecoder(
+        final boolean gzip,
+        final long maxInflatedSize,
+        final ByteBufferPool bufferPool
+    ) {
+        this(
+            gzip,
+            maxInflatedSize,
+            DEFAULT_CHUNK_SIZE,
+            bufferPool,
+            InflaterPool.defaultPool()
+        );
+    }
+
+    /**
+     * @param gzip            是否为 GZIP 格式，否则为 zlib 格式（Content-Encoding: deflate）
+     * @param maxInflatedSize 解码后内容的上限，小于等于 0 时不限制
+     * @param chunkSize       输出块的大小
+     * @param bufferPool      输出使用的对象池
+     * @param inflaterPool    Inflater 对象池
+     */
+    public InflaterContentDecoder(
+        final boolean gzip,
+        final long maxInflatedSize,
+        final int chunkSize,
+        final ByteBufferPool bufferPool,
+        final InflaterPool inflaterPool
+    ) {
+        this.gzip = gzip;
+        this.maxInflatedSize = maxInflatedSize;
+        this.chunkSize = chunkSize;
+        this.bufferPool = bufferPool;
+        this.inflaterPool = inflaterPool;
+        // GZIP 的头部和尾部自行解析，Inflater 只处理原始 Deflate 数据
+        this.inflater = inflaterPool.acquire(gzip);
+        this.state = gzip ? State.HEADER : State.DATA;
+    }
+
+    public static InflaterContentDecoder gzip(
+        final long maxInflatedSize,
+        final ByteBufferPool bufferPool
+    ) {
+        return new InflaterContentDecoder(true, maxInflatedSize, bufferPool);
+    }
+
+    public static InflaterContentDecoder deflate(
+        final long maxInflatedSize,
+        final ByteBufferPool bufferPool
+    ) {
+        return new InflaterContentDecoder(false, maxInflatedSize, bufferPool);
+    }
+
+    @Override
+    public void decode(
+        final ByteBufferStream content,
+        final Consumer<ByteBufferStream> output
+    ) {
+        if (this.inflater == null) {
+            throw new IllegalStateException("Decoder is closed");
+        }
+        final ByteBuffer input = content.getBuffer();
+        try {
+            while (input.hasRemaining()) {
+                this.started = true;
+                switch (this.state) {
+                    case DATA:
+                        this.inflate(input, output);
+                        break;
+                    case END:
+                        if (!this.gzip) {
+                            throw new BadMessageException(
+                                "Unexpected content after compressed data"
+                            );
+                        }
+                        // 多个 GZIP 成员拼接
+                        this.inflater.reset();
+                        this.crc.reset();
+                        this.memberSize = 0;
+                        this.state = State.HEADER;
+                        break;
+                    default:
+                        this.parseGzip(input.get() & 0xff);
+                }
+            }
+        } catch (final DataFormatException e) {
+            throw new BadMessageException("Invalid compressed content", e);
+        }
+    }
+
+    private void inflate(
+        final ByteBuffer input,
+        final Consumer<ByteBufferStream> output
+    )
+        throws DataFormatException {
+        if (this.inflater.needsInput()) {
+            this.inflater.setInput(input);
+        }
+        for (;;) {
+            final ByteBufferStream out = new ByteBufferStream(
+                this.chunkSize,
+                this.bufferPool
+            );
+            final int length;
+            try {
+                length = this.inflater.inflate(out.getBuffer());
+                this.inflatedSize += length;
+                if (
+                    this.maxInflatedSize > 0 &&
+                    this.inflatedSize > this.maxInflatedSize
+                ) {
+                    throw new BadMessageException(
+                        HttpStatus.PAYLOAD_TOO_LARGE,
+                        "Inflated content is too large"
+                    );
+                }
+            } catch (final DataFormatException | RuntimeException e) {
+                out.close();
+                throw e;
+            }
+            if (length > 0) {
+                out.flip();
+                if (this.gzip) {
+                    this.memberSize += length;
+                    this.crc.update(out.getBuffer().duplicate());
+                }
+                output.accept(out);
+            } else {
+                out.close();
+            }
+            if (this.inflater.finished()) {
+                this.state = this.gzip ? State.TRAILER : State.END;
+                this.fieldLength = 0;
+                this.value = 0;
+                return;
+            }
+            if (this.inflater.needsDictionary()) {
+                throw new BadMessageException(
+                    "Compressed content requires a preset dictionary"
+                );
+            }
+            if (length == 0) {
+                // 输入已经全部交给 Inflater，等待下一个内容块
+                return;
+            }
+        }
+    }
+
+    /**
+     * 解析 GZIP 头部和尾部
+     *
+     * @param b 无符号字节
+     */
+    private void parseGzip(final int b) {
+        switch (this.state) {
+            case HEADER:
+                // ID1 ID2 CM FLG MTIME(4) XFL OS
+                if (
+                    (this.fieldLength == 0 && b != GZIP_ID1) ||
+                    (this.fieldLength == 1 && b != GZIP_ID2)
+                ) {
+                    throw new BadMessageException("Invalid gzip magic");
+                }
+                if (this.fieldLength == 2 && b != GZIP_DEFLATE) {
+                    throw new BadMessageException(
+                        "Unsupported gzip compression method"
+                    );
+                }
+                if (this.fieldLength == 3) {
+                    this.flags = b;
+                }
+                if (++this.fieldLength == GZIP_HEADER_LENGTH) {
+                    this.nextHeaderState();
+                }
+                break;
+            case EXTRA_LENGTH:
+                this.value |= (long) b << (this.fieldLength * 8);
+                if (++this.fieldLength == 2) {
+                    // value 作为扩展字段的剩余长度
+                    this.state = State.EXTRA;
+                    if (this.value == 0) {
+                        this.nextHeaderState();
+                    }
+                }
+                break;
+            case EXTRA:
+                if (--this.value == 0) {
+                    this.nextHeaderState();
+                }
+                break;
+            case NAME:
+            case COMMENT:
+                // 以 0 结尾的字符串
+                if (b == 0) {
+                    this.nextHeaderState();
+                }
+                break;
+            case HCRC:
+                if (++this.fieldLength == 2) {
+                    this.nextHeaderState();
+                }
+                break;
+            case TRAILER:
+                // CRC32(4) ISIZE(4)，小端序
+                this.value |= (long) b << (this.fieldLength * 8);
+                if (++this.fieldLength == GZIP_TRAILER_LENGTH) {
+                    if ((this.value & 0xffffffffL) != this.crc.getValue()) {
+                        throw new BadMessageException("Invalid gzip checksum");
+                    }
+                    if (
+                        (this.value >>> 32) != (this.memberSize & 0xffffffffL)
+                    ) {
+                        throw new BadMessageException("Invalid gzip size");
+                    }
+                    this.state = State.END;
+                }
+                break;
+            default:
+                throw new IllegalStateException(this.state.toString());
+        }
+    }
+
+    /**
+     * 按 FLG 跳过不存在的可选字段
+     */
+    private void nextHeaderState() {
+        State next = this.state;
+        do {
+            next = State.values()[next.ordinal() + 1];
+        } while (!this.hasField(next));
+        this.state = next;
+        this.fieldLength = 0;
+        this.value = 0;
+    }
+
+    private boolean hasField(final State state) {
+        switch (state) {
+            case EXTRA_LENGTH:
+                return (this.flags & FEXTRA) != 0;
+            case NAME:
+                return (this.flags & FNAME) != 0;
+            case COMMENT:
+                return (this.flags & FCOMMENT) != 0;
+            case HCRC:
+                return (this.flags & FHCRC) != 0;
+            case EXTRA:
+                // 只能由 EXTRA_LENGTH 进入
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    public void complete() {
+        if (this.started && this.state != State.END) {
+            throw new BadMessageException("Incomplete compressed content");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.inflater != null) {
+            this.inflaterPool.release(this.inflater, this.gzip);
+            this.inflater = null;
+        }
+    }
+
+    public long getInflatedSize() {
+        return inflatedSize;
+    }
+}
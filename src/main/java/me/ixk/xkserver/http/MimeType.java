@@ -5,13 +5,17 @@
 
 package me.ixk.xkserver.http;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import me.ixk.xkserver.utils.ByteTrie;
 
 /**
  * Mime 类型
+ * <p>
+ * 类型名称和文件扩展名都使用忽略大小写的 ByteTrie 查找，不需要先转为小写或 substring，完整的 Content-Type 行在创建时预先生成
  *
  * @author Otstar Lin
  * @date 2020/10/24 下午 2:25
@@ -94,31 +98,173 @@ public enum MimeType {
      * application/json;charset=utf-8
      */
     APPLICATION_JSON_UTF_8("application/json;charset=utf-8", APPLICATION_JSON),
+    /**
+     * text/css
+     */
+    TEXT_CSS("text/css"),
+    /**
+     * text/csv
+     */
+    TEXT_CSV("text/csv"),
+    /**
+     * text/javascript
+     */
+    TEXT_JAVASCRIPT("text/javascript"),
+    /**
+     * text/markdown
+     */
+    TEXT_MARKDOWN("text/markdown"),
+    /**
+     * application/xml
+     */
+    APPLICATION_XML("application/xml"),
+    /**
+     * application/pdf
+     */
+    APPLICATION_PDF("application/pdf"),
+    /**
+     * application/zip
+     */
+    APPLICATION_ZIP("application/zip"),
+    /**
+     * application/gzip
+     */
+    APPLICATION_GZIP("application/gzip"),
+    /**
+     * application/wasm
+     */
+    APPLICATION_WASM("application/wasm"),
+    /**
+     * application/octet-stream
+     */
+    APPLICATION_OCTET_STREAM("application/octet-stream"),
+    /**
+     * image/png
+     */
+    IMAGE_PNG("image/png"),
+    /**
+     * image/jpeg
+     */
+    IMAGE_JPEG("image/jpeg"),
+    /**
+     * image/gif
+     */
+    IMAGE_GIF("image/gif"),
+    /**
+     * image/webp
+     */
+    IMAGE_WEBP("image/webp"),
+    /**
+     * image/svg+xml
+     */
+    IMAGE_SVG("image/svg+xml"),
+    /**
+     * image/x-icon
+     */
+    IMAGE_ICON("image/x-icon"),
+    /**
+     * font/woff
+     */
+    FONT_WOFF("font/woff"),
+    /**
+     * font/woff2
+     */
+    FONT_WOFF2("font/woff2"),
+    /**
+     * font/ttf
+     */
+    FONT_TTF("font/ttf"),
+    /**
+     * font/otf
+     */
+    FONT_OTF("font/otf"),
+    /**
+     * audio/mpeg
+     */
+    AUDIO_MPEG("audio/mpeg"),
+    /**
+     * video/mp4
+     */
+    VIDEO_MP4("video/mp4"),
     ;
 
     public static final Map<String, MimeType> CACHE = new HashMap<>(512);
+    private static final ByteTrie<MimeType> TYPES = new ByteTrie<>(true);
+    private static final ByteTrie<MimeType> EXTENSIONS = new ByteTrie<>(true);
+    private static final Magic[] MAGICS = {
+        new Magic(IMAGE_PNG, 0, 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'),
+        new Magic(IMAGE_JPEG, 0, 0xff, 0xd8, 0xff),
+        new Magic(IMAGE_GIF, 0, 'G', 'I', 'F', '8'),
+        new Magic(IMAGE_WEBP, 8, 'W', 'E', 'B', 'P'),
+        new Magic(APPLICATION_PDF, 0, '%', 'P', 'D', 'F', '-'),
+        new Magic(APPLICATION_ZIP, 0, 'P', 'K', 0x03, 0x04),
+        new Magic(APPLICATION_GZIP, 0, 0x1f, 0x8b),
+        new Magic(APPLICATION_WASM, 0, 0x00, 'a', 's', 'm'),
+        new Magic(FONT_WOFF, 0, 'w', 'O', 'F', 'F'),
+        new Magic(FONT_WOFF2, 0, 'w', 'O', 'F', '2'),
+    };
 
     static {
         for (final MimeType type : MimeType.values()) {
             CACHE.put(type.toString(), type);
+            TYPES.put(type.toString(), type);
 
             final int charset = type.toString().indexOf(";charset=");
             if (charset > 0) {
                 final String alt = type.toString()
                                        .replace(";charset=", "; charset=");
                 CACHE.put(alt, type);
+                TYPES.put(alt, type);
             }
         }
+        extensions(TEXT_HTML, "html", "htm");
+        extensions(TEXT_PLAIN, "txt", "text", "log");
+        extensions(TEXT_XML, "xml");
+        extensions(TEXT_CSS, "css");
+        extensions(TEXT_CSV, "csv");
+        extensions(TEXT_JAVASCRIPT, "js", "mjs");
+        extensions(TEXT_MARKDOWN, "md", "markdown");
+        extensions(APPLICATION_JSON, "json", "map");
+        extensions(APPLICATION_PDF, "pdf");
+        extensions(APPLICATION_ZIP, "zip");
+        extensions(APPLICATION_GZIP, "gz");
+        extensions(APPLICATION_WASM, "wasm");
+        extensions(APPLICATION_OCTET_STREAM, "bin", "exe");
+        extensions(IMAGE_PNG, "png");
+        extensions(IMAGE_JPEG, "jpg", "jpeg");
+        extensions(IMAGE_GIF, "gif");
+        extensions(IMAGE_WEBP, "webp");
+        extensions(IMAGE_SVG, "svg");
+        extensions(IMAGE_ICON, "ico");
+        extensions(FONT_WOFF, "woff");
+        extensions(FONT_WOFF2, "woff2");
+        extensions(FONT_TTF, "ttf");
+        extensions(FONT_OTF, "otf");
+        extensions(AUDIO_MPEG, "mp3");
+        extensions(VIDEO_MP4, "mp4");
+    }
+
+    private static void extensions(
+        final MimeType type,
+        final String... extensions
+    ) {
+        for (final String extension : extensions) {
+            EXTENSIONS.put(extension, type);
+        }
     }
 
     private final String string;
     private final MimeType base;
     private final Charset charset;
+    private final String contentType;
+    private final ByteBuffer contentTypeField;
 
     MimeType(final String s) {
         string = s;
         base = this;
         charset = null;
+        contentType = contentType(s);
+        contentTypeField = contentTypeField(contentType);
     }
 
     MimeType(final String s, final MimeType base) {
@@ -126,12 +272,116 @@ public enum MimeType {
         this.base = base;
         final int i = s.indexOf(";charset=");
         charset = Charset.forName(s.substring(i + 9));
+        contentType = s;
+        contentTypeField = contentTypeField(contentType);
     }
 
     MimeType(final String s, final Charset cs) {
         string = s;
         base = this;
         charset = cs;
+        contentType = contentType(s);
+        contentTypeField = contentTypeField(contentType);
+    }
+
+    /**
+     * 文本类型没有指定编码时默认使用 utf-8
+     */
+    private static String contentType(final String type) {
+        if (
+            type.startsWith("text/") ||
+            type.equals("application/json") ||
+            type.equals("application/xml") ||
+            type.equals("image/svg+xml")
+        ) {
+            return type + ";charset=utf-8";
+        }
+        return type;
+    }
+
+    private static ByteBuffer contentTypeField(final String contentType) {
+        return ByteBuffer
+            .wrap(
+                (
+                    HttpHeader.CONTENT_TYPE.asString() +
+                    ": " +
+                    contentType +
+                    "\r\n"
+                ).getBytes(StandardCharsets.ISO_8859_1)
+            )
+            .asReadOnlyBuffer();
+    }
+
+    /**
+     * 忽略大小写查找类型
+     *
+     * @param type 如 text/html、TEXT/HTML; charset=UTF-8
+     *
+     * @return MimeType，未知类型时返回 null
+     */
+    public static MimeType from(final String type) {
+        return TYPES.get(type);
+    }
+
+    public static MimeType from(
+        final byte[] bytes,
+        final int offset,
+        final int length
+    ) {
+        return TYPES.get(bytes, offset, length);
+    }
+
+    /**
+     * 按扩展名查找类型
+     *
+     * @param extension 扩展名，不包含 .
+     *
+     * @return MimeType，未知扩展名时返回 null
+     */
+    public static MimeType forExtension(final String extension) {
+        return EXTENSIONS.get(extension);
+    }
+
+    /**
+     * 按文件名或路径的扩展名查找类型，不创建新的 String
+     *
+     * @param name 文件名或路径
+     *
+     * @return MimeType，没有扩展名或未知扩展名时返回 null
+     */
+    public static MimeType forFileName(final String name) {
+        for (int i = name.length() - 1; i >= 0; i--) {
+            final char c = name.charAt(i);
+            if (c == '.') {
+                return EXTENSIONS.get(name, i + 1, name.length() - i - 1);
+            }
+            if (c == '/' || c == '\\') {
+                break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按内容开头的特征字节判断类型，用于没有扩展名的文件
+     *
+     * @param bytes  内容
+     * @param offset 开始的位置
+     * @param length 可用的长度
+     *
+     * @return MimeType，无法判断时返回 null
+     */
+    public static MimeType sniff(
+        final byte[] bytes,
+        final int offset,
+        final int length
+    ) {
+        for (final Magic magic : MAGICS) {
+            if (magic.matches(bytes, offset, length)) {
+                return magic.type;
+            }
+        }
+        return null;
     }
 
     public MimeType getBase() {
@@ -150,8 +400,58 @@ public enum MimeType {
         return string;
     }
 
+    /**
+     * @return 带编码的 Content-Type 值，文本类型默认为 utf-8
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return 预先生成的 "Content-Type: xxx\r\n" 行，共享内容的只读 Buffer，position 和 limit 独立
+     */
+    public ByteBuffer getContentTypeField() {
+        return contentTypeField.duplicate();
+    }
+
     @Override
     public String toString() {
         return string;
     }
+
+    private static class Magic {
+        private final MimeType type;
+        private final int offset;
+        private final byte[] prefix;
+
+        private Magic(
+            final MimeType type,
+            final int offset,
+            final int... prefix
+        ) {
+            this.type = type;
+            this.offset = offset;
+            this.prefix = new byte[prefix.length];
+            for (int i = 0; i < prefix.length; i++) {
+                this.prefix[i] = (byte) prefix[i];
+            }
+        }
+
+        private boolean matches(
+            final byte[] bytes,
+            final int offset,
+            final int length
+        ) {
+            if (length < this.offset + this.prefix.length) {
+                return false;
+            }
+            final int start = offset + this.offset;
+            for (int i = 0; i < this.prefix.length; i++) {
+                if (bytes[start + i] != this.prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
@@ -24,6 +24,7 @@ import javax.servlet.http.Part;
 import me.ixk.xkserver.http.MultiPartParser.PartHandler;
 import me.ixk.xkserver.io.ByteBufferPool;
 import me.ixk.xkserver.io.ByteBufferStream;
+import me.ixk.xkserver.io.MappedByteBufferStream;
 import me.ixk.xkserver.utils.MultiMap;
 import me.ixk.xkserver.utils.ResourceUtils;
 
@@ -126,9 +127,11 @@ public class MultiParts implements PartHandler {
     @Override
     public void addContent(ByteBufferStream buffer) {
         try {
-            this.part.write(buffer.getInputStream());
+            this.part.write(buffer.getBuffer());
         } catch (final IOException e) {
             throw new BadMessageException("Unable to parse multipart body", e);
+        } finally {
+            buffer.close();
         }
     }
 
@@ -170,17 +173,11 @@ public class MultiParts implements PartHandler {
 
         public void readName() {
             final HttpField cd =
-                this.headers.get(HttpHeader.CONTENT_DISPOSITION.asString());
-            final String name = cd.getParam("name");
-            final String filename = cd.getParam("filename");
-            this.setName(
-                    name == null ? null : name.substring(1, name.length() - 1)
-                );
-            this.setFileName(
-                    fileName == null
-                        ? null
-                        : filename.substring(1, filename.length() - 1)
-                );
+                this.headers.get(HttpHeader.CONTENT_DISPOSITION);
+            // 引号已经在解析参数时去除
+            final HttpField.Params params = cd.getParams();
+            this.setName(params.get("name"));
+            this.setFileName(params.get("filename"));
         }
 
         public void setName(String name) {
@@ -204,11 +201,21 @@ public class MultiParts implements PartHandler {
         }
 
         public void write(final ByteBuffer buffer) throws IOException {
-            this.write(
-                    buffer.array(),
-                    buffer.arrayOffset() + buffer.position(),
-                    buffer.remaining()
-                );
+            if (buffer.hasArray()) {
+                this.write(
+                        buffer.array(),
+                        buffer.arrayOffset() + buffer.position(),
+                        buffer.remaining()
+                    );
+                buffer.position(buffer.limit());
+                return;
+            }
+            final byte[] bytes = new byte[Math.min(buffer.remaining(), 8192)];
+            while (buffer.hasRemaining()) {
+                final int length = Math.min(bytes.length, buffer.remaining());
+                buffer.get(bytes, 0, length);
+                this.write(bytes, 0, length);
+            }
         }
 
         public void write(final byte[] bytes, int offset, int length)
@@ -284,7 +291,13 @@ public class MultiParts implements PartHandler {
         public InputStream getInputStream() throws IOException {
             // 已经写入到文件
             if (this.file != null) {
-                return IoUtil.toStream(this.file);
+                if (this.file.length() > Integer.MAX_VALUE) {
+                    return IoUtil.toStream(this.file);
+                }
+                // 直接映射文件，不复制到堆内存
+                return MappedByteBufferStream
+                    .map(this.file.toPath())
+                    .getInputStream();
             } else {
                 return new ByteArrayInputStream(
                     ((ByteArrayOutputStream) out).toByteArray()
@@ -295,7 +308,7 @@ public class MultiParts implements PartHandler {
         @Override
         public String getContentType() {
             final String contentType =
-                this.getHeader(HttpHeader.CONTENT_TYPE.asString());
+                this.headers.getValue(HttpHeader.CONTENT_TYPE);
             return contentType == null
                 ? MultiParts.this.contentType
                 : contentType;
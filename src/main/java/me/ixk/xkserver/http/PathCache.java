@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 路径解码缓存
+ * <p>
+ * 从原始路径的字节映射到解码并规范化后的路径，接口路由通常只有少量热点路径，缓存后不需要每个请求都重新解码
+ * <p>
+ * 使用 2 路组相联的数组保存，容量固定，满时按 TinyLFU 的方式准入：新路径的访问频率高于被替换的路径时才写入，只访问一次的路径不会冲掉热点路径。
+ * 频率使用 4 行的 Count-Min Sketch 统计，累计次数达到上限后全部减半，使旧的热点可以逐渐淘汰
+ * <p>
+ * 条目不可变，数组和计数不加锁，并发时可能丢失部分计数或覆盖写入，只影响命中率，不影响结果
+ *
+ * @author Otstar Lin
+ * @date 2021/1/20 下午 2:15
+ */
+public class PathCache {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int DEFAULT_MAX_LENGTH = 256;
+    private static final PathCache DEFAULT_CACHE = new PathCache(
+        DEFAULT_CAPACITY,
+        DEFAULT_MAX_LENGTH
+    );
+    private static final int[] SEEDS = {
+        0x97cb3127,
+        0xb7a1d8a5,
+        0x5c6b5e9b,
+        0x9e3779b9,
+    };
+    private static final int MAX_FREQUENCY = 15;
+
+    private final Entry[] table;
+    private final int mask;
+    private final int maxLength;
+    private final int[] sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private int additions = 0;
+
+    /**
+     * @param capacity  缓存的路径数量上限
+     * @param maxLength 缓存的路径长度上限，超过时直接解码
+     */
+    public PathCache(final int capacity, final int maxLength) {
+        final int size = Math.max(
+            2,
+            Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1
+        );
+        this.table = new Entry[size];
+        this.mask = size - 1;
+        this.maxLength = maxLength;
+        this.sketch = new int[size << 2];
+        this.sketchMask = size - 1;
+        this.sampleSize = size * 10;
+    }
+
+    public static PathCache defaultCache() {
+        return DEFAULT_CACHE;
+    }
+
+    /**
+     * 获取解码后的路径
+     *
+     * @param bytes  字节数组
+     * @param offset 路径开始的位置
+     * @param length 路径的长度
+     *
+     * @return 解码并规范化后的路径，不合法时返回 null
+     */
+    public String get(final byte[] bytes, final int offset, final int length) {
+        if (length > this.maxLength) {
+            return decodePath(
+                new String(bytes, offset, length, StandardCharsets.ISO_8859_1),
+                true
+            );
+        }
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + (bytes[i] & 0xff);
+        }
+        final int slot = spread(hash) & this.mask & ~1;
+        Entry entry = this.table[slot];
+        if (entry == null || !entry.matches(hash, bytes, offset, length)) {
+            entry = this.table[slot + 1];
+            if (entry == null || !entry.matches(hash, bytes, offset, length)) {
+                entry = null;
+            }
+        }
+        this.increment(hash);
+        if (entry != null) {
+            return entry.value;
+        }
+        final byte[] key = new byte[length];
+        System.arraycopy(bytes, offset, key, 0, length);
+        final String value = decodePath(
+            new String(key, StandardCharsets.ISO_8859_1),
+            true
+        );
+        if (value != null) {
+            this.admit(slot, new Entry(key, hash, value));
+        }
+        return value;
+    }
+
+    /**
+     * 获取解码后的路径
+     * <p>
+     * 字符都不超过 0xff 时视为按 ISO-8859-1 解码的原始字节
+     *
+     * @param path 原始路径
+     *
+     * @return 解码并规范化后的路径，不合法时返回 null
+     */
+    public String get(final String path) {
+        final int length = path.length();
+        for (int i = 0; i < length; i++) {
+            if (path.charAt(i) > 0xff) {
+                // 不是原始的请求行，不缓存
+                return decodePath(path, false);
+            }
+        }
+        if (length > this.maxLength) {
+            return decodePath(path, true);
+        }
+        final byte[] bytes = path.getBytes(StandardCharsets.ISO_8859_1);
+        return this.get(bytes, 0, bytes.length);
+    }
+
+    public int capacity() {
+        return this.table.length;
+    }
+
+    private void admit(final int slot, final Entry candidate) {
+        final Entry first = this.table[slot];
+        if (first == null) {
+            this.table[slot] = candidate;
+            return;
+        }
+        final Entry second = this.table[slot + 1];
+        if (second == null) {
+            this.table[slot + 1] = candidate;
+            return;
+        }
+        final int firstFrequency = this.frequency(first.hash);
+        final int secondFrequency = this.frequency(second.hash);
+        final int victim = firstFrequency <= secondFrequency ? slot : slot + 1;
+        final int victimFrequency = Math.min(firstFrequency, secondFrequency);
+        if (this.frequency(candidate.hash) > victimFrequency) {
+            this.table[victim] = candidate;
+        }
+    }
+
+    private int frequency(final int hash) {
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, this.sketch[this.indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private void increment(final int hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            final int index = this.indexOf(hash, i);
+            if (this.sketch[index] < MAX_FREQUENCY) {
+                this.sketch[index]++;
+                added = true;
+            }
+        }
+        if (added && ++this.additions >= this.sampleSize) {
+            this.age();
+        }
+    }
+
+    /**
+     * 计数全部减半
+     */
+    private void age() {
+        for (int i = 0; i < this.sketch.length; i++) {
+            this.sketch[i] >>>= 1;
+        }
+        this.additions = 0;
+    }
+
+    private int indexOf(final int hash, final int row) {
+        final int h = spread(hash * SEEDS[row]);
+        return (row * (this.sketchMask + 1)) + (h & this.sketchMask);
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * 解码并规范化路径
+     * <p>
+     * 按 / 分段，去除每段的 ;param，解码 %XX（UTF-8），再处理 . 和 ..，解码后的 %2e%2e 同样视为 ..
+     *
+     * @param path 原始路径
+     *
+     * @return 规范化后的路径，编码不合法、解码出 /、\ 或 NUL、.. 超出根路径时返回 null
+     */
+    public static String decodePath(final String path) {
+        return decodePath(path, false);
+    }
+
+    /**
+     * @param raw 字符是否为按 ISO-8859-1 解码的原始字节，是则未编码的非 ASCII 字符按原始字节处理，否则按 UTF-8 编码
+     */
+    private static String decodePath(final String path, final boolean raw) {
+        final int length = path.length();
+        final boolean absolute = length > 0 && path.charAt(0) == '/';
+        final List<String> segments = new ArrayList<>();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        int start = absolute ? 1 : 0;
+        while (true) {
+            int end = path.indexOf('/', start);
+            final boolean last = end < 0;
+            if (last) {
+                end = length;
+            }
+            final String segment = decodeSegment(path, start, end, raw, out);
+            if (segment == null) {
+                return null;
+            }
+            if ("..".equals(segment)) {
+                if (segments.isEmpty()) {
+                    return null;
+                }
+                segments.remove(segments.size() - 1);
+            } else if (!".".equals(segment)) {
+                segments.add(segment);
+                if (last) {
+                    break;
+                }
+            }
+            if (last) {
+                // 以 . 或 .. 结尾时保留末尾的 /
+                segments.add("");
+                break;
+            }
+            start = end + 1;
+        }
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < segments.size(); i++) {
+            if (absolute || i > 0) {
+                builder.append('/');
+            }
+            builder.append(segments.get(i));
+        }
+        return builder.toString();
+    }
+
+    private static String decodeSegment(
+        final String path,
+        final int start,
+        final int end,
+        final boolean raw,
+        final ByteArrayOutputStream out
+    ) {
+        int segmentEnd = path.indexOf(';', start);
+        if (segmentEnd < 0 || segmentEnd > end) {
+            segmentEnd = end;
+        }
+        out.reset();
+        for (int i = start; i < segmentEnd; i++) {
+            final char c = path.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= segmentEnd) {
+                    return null;
+                }
+                final int hi = Character.digit(path.charAt(i + 1), 16);
+                final int lo = Character.digit(path.charAt(i + 2), 16);
+                if (hi < 0 || lo < 0) {
+                    return null;
+                }
+                final int b = (hi << 4) | lo;
+                if (b == '/' || b == '\\' || b == 0) {
+                    // 解码出的分隔符和 NUL 会绕过 . 和 .. 的处理
+                    return null;
+                }
+                out.write(b);
+                i += 2;
+            } else if (c > 0x7f && (!raw || c > 0xff)) {
+                final byte[] bytes = String
+                    .valueOf(c)
+                    .getBytes(StandardCharsets.UTF_8);
+                out.write(bytes, 0, bytes.length);
+            } else {
+                out.write(c);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static class Entry {
+        private final byte[] key;
+        private final int hash;
+        private final String value;
+
+        private Entry(final byte[] key, final int hash, final String value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+
+        private boolean matches(
+            final int hash,
+            final byte[] bytes,
+            final int offset,
+            final int length
+        ) {
+            if (this.hash != hash || this.key.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (this.key[i] != bytes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
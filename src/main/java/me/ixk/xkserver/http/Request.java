@@ -47,6 +47,7 @@ import javax.servlet.http.HttpUpgradeHandler;
 import javax.servlet.http.Part;
 import me.ixk.xkserver.http.HttpHeader.Value;
 import me.ixk.xkserver.http.MultiParts.MultiPartConfig;
+import me.ixk.xkserver.io.ByteBufferStream;
 import me.ixk.xkserver.utils.Json;
 import me.ixk.xkserver.utils.MultiMap;
 
@@ -93,6 +94,37 @@ public class Request implements HttpServletRequest {
         this.setMetaData(httpChannel);
     }
 
+    /**
+     * 重置请求，清除上一个请求的缓存，以便同一个连接复用
+     * <p>
+     * 需要在 HttpChannel 解析完新请求的请求头后调用
+     */
+    public void reset() {
+        if (this.multiParts != null) {
+            for (final Part part : this.multiParts.getCollection()) {
+                try {
+                    part.delete();
+                } catch (final IOException e) {
+                    // ignore
+                }
+            }
+        }
+        if (this.attributes != null) {
+            this.attributes.clearAttributes();
+        }
+        this.cookies = null;
+        this.characterEncoding = null;
+        this.sessionIdReady = false;
+        this.sessionId = null;
+        this.sessionFromCookie = true;
+        this.parameters = null;
+        this.queryParameters = null;
+        this.contentParameters = null;
+        this.multiParts = null;
+        this.parseBody = null;
+        this.setMetaData(this.httpChannel);
+    }
+
     private void setMetaData(final HttpChannel channel) {
         this.httpFields = channel.getHttpFields();
         this.httpMethod = channel.getHttpMethod();
@@ -102,37 +134,32 @@ public class Request implements HttpServletRequest {
             (InetSocketAddress) channel.getSocket().getRemoteSocketAddress();
         this.local =
             (InetSocketAddress) channel.getSocket().getLocalSocketAddress();
+        // 直接在解析出的 Uri 上补全，不再复制
         final HttpUri uri = channel.getHttpUri();
-        if (uri.isAbsolute() && uri.hasAuthority() && uri.getPath() != null) {
-            this.httpUri = uri;
-        } else {
-            final HttpUri build = new HttpUri(uri);
-            if (!build.isAbsolute()) {
-                build.setScheme("http");
-            }
-            if (build.getPath() == null) {
-                build.setPath("/");
-            }
-            if (!uri.hasAuthority()) {
-                final String hostAndPort =
-                    this.httpFields.getValue(HttpHeader.HOST.asString());
-                if (hostAndPort != null) {
-                    final String[] split = hostAndPort.split(":");
-                    build.setHost(split[0]);
-                    if (split.length > 1) {
-                        build.setPort(Integer.parseInt(split[1]));
-                    } else {
-                        build.setPort(
-                            this.schemeDefaultPort(build.getScheme())
-                        );
-                    }
-                } else {
-                    build.setHost(this.findServerHost());
-                    build.setPort(this.findServerPort());
+        if (!uri.isAbsolute()) {
+            uri.setScheme("http");
+        }
+        if (uri.getPath() == null) {
+            uri.setPath("/");
+        }
+        if (!uri.hasAuthority()) {
+            final String hostAndPort =
+                this.httpFields.getValue(HttpHeader.HOST);
+            if (hostAndPort != null) {
+                try {
+                    uri.setAuthority(
+                        hostAndPort,
+                        this.schemeDefaultPort(uri.getScheme())
+                    );
+                } catch (final IllegalArgumentException e) {
+                    throw new BadMessageException("Bad Host header", e);
                 }
+            } else {
+                uri.setHost(this.findServerHost());
+                uri.setPort(this.findServerPort());
             }
-            this.httpUri = build;
         }
+        this.httpUri = uri;
     }
 
     @Override
@@ -145,8 +172,7 @@ public class Request implements HttpServletRequest {
     public Cookie[] getCookies() {
         if (this.cookies == null) {
             this.cookies = new ArrayList<>();
-            final HttpField field =
-                this.httpFields.get(HttpHeader.COOKIE.asString());
+            final HttpField field = this.httpFields.get(HttpHeader.COOKIE);
             if (field != null) {
                 for (int i = 0; i < field.size(); i++) {
                     for (final String value : field.getParamValues(i)) {
@@ -440,7 +466,7 @@ public class Request implements HttpServletRequest {
     public String getCharacterEncoding() {
         if (this.characterEncoding == null) {
             final HttpField field =
-                this.httpFields.get(HttpHeader.CONTENT_TYPE.asString());
+                this.httpFields.get(HttpHeader.CONTENT_TYPE);
             if (field != null) {
                 this.characterEncoding =
                     field.getParam(Value.CHARSET.asString());
@@ -461,22 +487,20 @@ public class Request implements HttpServletRequest {
 
     @Override
     public int getContentLength() {
-        final HttpField field =
-            this.httpFields.get(HttpHeader.CONTENT_LENGTH.asString());
-        return field == null ? -1 : Integer.parseInt(field.getValue());
+        final long contentLength = this.getContentLengthLong();
+        // 超出 int 范围时按未知长度处理
+        return contentLength > Integer.MAX_VALUE ? -1 : (int) contentLength;
     }
 
     @Override
     public long getContentLengthLong() {
-        final HttpField field =
-            this.httpFields.get(HttpHeader.CONTENT_LENGTH.asString());
-        return field == null ? -1 : Long.parseLong(field.getValue());
+        final HttpField field = this.httpFields.get(HttpHeader.CONTENT_LENGTH);
+        return field == null ? -1 : HttpTokens.parseLength(field.getValue());
     }
 
     @Override
     public String getContentType() {
-        final HttpField field =
-            this.httpFields.get(HttpHeader.CONTENT_TYPE.asString());
+        final HttpField field = this.httpFields.get(HttpHeader.CONTENT_TYPE);
         return field == null ? null : field.getValue();
     }
 
@@ -606,8 +630,7 @@ public class Request implements HttpServletRequest {
 
     @Override
     public Locale getLocale() {
-        final HttpField field =
-            this.httpFields.get(HttpHeader.ACCEPT_LANGUAGE.asString());
+        final HttpField field = this.httpFields.get(HttpHeader.ACCEPT_LANGUAGE);
         if (field == null) {
             return Locale.getDefault();
         }
@@ -627,8 +650,7 @@ public class Request implements HttpServletRequest {
 
     @Override
     public Enumeration<Locale> getLocales() {
-        final HttpField field =
-            this.httpFields.get(HttpHeader.ACCEPT_LANGUAGE.asString());
+        final HttpField field = this.httpFields.get(HttpHeader.ACCEPT_LANGUAGE);
         if (field == null) {
             return Collections.enumeration(
                 Collections.singletonList(Locale.getDefault())
@@ -794,12 +816,12 @@ public class Request implements HttpServletRequest {
 
     private void extractContentParameters() {
         final String contentType = this.getContentType();
-        final int contentLength = this.getContentLength();
+        final long contentLength = this.getContentLengthLong();
         if (StrUtil.isEmpty(contentType) || contentLength == 0) {
             this.contentParameters = NO_PARAMS;
         } else {
             final HttpField field =
-                this.httpFields.get(HttpHeader.CONTENT_TYPE.asString());
+                this.httpFields.get(HttpHeader.CONTENT_TYPE);
             final String baseType = field.getParamValue();
             if (
                 MimeType.FORM_ENCODED.is(baseType) && this.isFormEncodedMethod()
@@ -843,18 +865,20 @@ public class Request implements HttpServletRequest {
 
     private void extractFormParameters() {
         try {
-            this.contentParameters =
-                this.decodeParameters(
-                        IoUtil.read(
-                            this.getInputStream(),
-                            this.getCharacterEncoding()
-                        )
-                    );
-        } catch (final UtilException | IOException e) {
+            this.contentParameters = this.decodeParameters(this.readBody());
+        } catch (final IOException e) {
             throw new BadMessageException("Unable to parse Form parameters", e);
         }
     }
 
+    private String readBody() throws IOException {
+        // 一次性复制全部内容，避免通过通用的 InputStream 循环读取
+        return new String(
+            this.httpInput.readAllBytes(),
+            this.getCharacterEncoding()
+        );
+    }
+
     private boolean isFormEncodedMethod() {
         switch (this.httpMethod) {
             case POST:
@@ -867,11 +891,15 @@ public class Request implements HttpServletRequest {
 
     private boolean isContentEncodingSupported() {
         final HttpField contentEncoding =
-            this.httpFields.get(HttpHeader.CONTENT_ENCODING.asString());
+            this.httpFields.get(HttpHeader.CONTENT_ENCODING);
         if (contentEncoding == null) {
             return true;
         }
-        return HttpHeader.Value.IDENTITY.is(contentEncoding.getValue());
+        // gzip、deflate 等编码已经由 HttpChannel 在写入 HttpInput 前解码
+        return (
+            HttpHeader.Value.IDENTITY.is(contentEncoding.getValue()) ||
+            this.httpChannel.getContentDecoder() != null
+        );
     }
 
     private void extractParts() {
@@ -882,8 +910,7 @@ public class Request implements HttpServletRequest {
                     ),
                 this.getContentType()
             );
-        final HttpField field =
-            this.httpFields.get(HttpHeader.CONTENT_TYPE.asString());
+        final HttpField field = this.httpFields.get(HttpHeader.CONTENT_TYPE);
         final String boundary = field.getParam("boundary");
         if (boundary == null) {
             throw new BadMessageException(
@@ -894,8 +921,17 @@ public class Request implements HttpServletRequest {
             this.multiParts,
             boundary
         );
-        if (this.httpInput.isReady()) {
-            parser.parse(this.httpInput.readBuffer());
+        try {
+            ByteBufferStream buffer;
+            while ((buffer = this.httpInput.readBuffer()) != null) {
+                try {
+                    parser.parse(buffer);
+                } finally {
+                    buffer.close();
+                }
+            }
+        } catch (final IOException e) {
+            throw new BadMessageException("Unable to read multi parts", e);
         }
         ByteArrayOutputStream os = null;
         for (final Part part : this.multiParts.getCollection()) {
@@ -940,13 +976,7 @@ public class Request implements HttpServletRequest {
 
     private void extractJson() {
         try {
-            this.parseBody =
-                Json.parse(
-                    IoUtil.read(
-                        this.getInputStream(),
-                        this.getCharacterEncoding()
-                    )
-                );
+            this.parseBody = Json.parse(this.readBody());
         } catch (final IOException e) {
             throw new BadMessageException("Unable to parse Json body", e);
         }
@@ -7,6 +7,7 @@ package me.ixk.xkserver.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * @author Otstar Lin
@@ -35,6 +36,37 @@ public class ByteBufferInputStream extends InputStream {
         return stream.read(bytes, offset, length);
     }
 
+    @Override
+    public final byte[] readAllBytes() throws IOException {
+        final byte[] bytes = new byte[stream.remaining()];
+        stream.read(bytes);
+        return bytes;
+    }
+
+    @Override
+    public final byte[] readNBytes(int length) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("length < 0");
+        }
+        final byte[] bytes = new byte[Math.min(length, stream.remaining())];
+        stream.read(bytes);
+        return bytes;
+    }
+
+    @Override
+    public final int readNBytes(byte[] bytes, int offset, int length)
+        throws IOException {
+        final int readed = stream.read(bytes, offset, length);
+        return readed == -1 ? 0 : readed;
+    }
+
+    @Override
+    public final long transferTo(OutputStream out) throws IOException {
+        final long length = stream.remaining();
+        stream.writeTo(out);
+        return length;
+    }
+
     @Override
     public final long skip(long length) throws IOException {
         return stream.skip(length);
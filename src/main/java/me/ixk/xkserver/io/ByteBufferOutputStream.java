@@ -7,6 +7,7 @@ package me.ixk.xkserver.io;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * @author Otstar Lin
@@ -35,6 +36,10 @@ public class ByteBufferOutputStream extends OutputStream {
         stream.write(bytes, offset, length);
     }
 
+    public final void write(ByteBuffer buffer) throws IOException {
+        stream.write(buffer);
+    }
+
     @Override
     public final void close() throws IOException {
         stream.close();
@@ -39,6 +39,7 @@ public class ByteBufferPool {
     private final AtomicLong directMemory = new AtomicLong(0);
     private final Map<Integer, Bucket> directBucket = new ConcurrentHashMap<>();
     private final Map<Integer, Bucket> heapBucket = new ConcurrentHashMap<>();
+    private volatile LeakDetector leakDetector = LeakDetector.defaultDetector();
 
     public ByteBufferPool() {
         this(DEFAULT_BUCKET_INCREMENT);
@@ -104,7 +105,23 @@ public class ByteBufferPool {
             return this.newByteBuffer(capacity, direct);
         }
         this.decrementMemory(buffer);
-        return buffer;
+        // 归还的 Buffer 可能还保留着上次使用的 position/limit
+        return this.resetToWrite(buffer);
+    }
+
+    public RetainableByteBuffer acquireRetainable(final int size) {
+        return this.acquireRetainable(size, false);
+    }
+
+    public RetainableByteBuffer acquireRetainable(
+        final int size,
+        final boolean direct
+    ) {
+        return new RetainableByteBuffer(
+            this.acquire(size, direct),
+            this,
+            this.leakDetector
+        );
     }
 
     public void release(final ByteBuffer buffer) {
@@ -112,7 +129,7 @@ public class ByteBufferPool {
             return;
         }
         final int capacity = buffer.capacity();
-        if (capacity % this.increment != 0) {
+        if (capacity == 0 || capacity % this.increment != 0) {
             return;
         }
         final int key = this.getKey(capacity);
@@ -185,6 +202,14 @@ public class ByteBufferPool {
         return direct ? this.directMemory : this.heapMemory;
     }
 
+    public LeakDetector getLeakDetector() {
+        return leakDetector;
+    }
+
+    public void setLeakDetector(final LeakDetector leakDetector) {
+        this.leakDetector = leakDetector;
+    }
+
     private void releaseMemory(final boolean direct) {
         while (true) {
             final long memory = this.getMemory(direct).get();
@@ -19,6 +19,7 @@ public class ByteBufferStream {
     private static final int DEFAULT_CAPACITY = 1024;
 
     private final ByteBufferPool bufferPool;
+    private volatile RetainableByteBuffer retainable;
     private volatile ByteBuffer buffer;
 
     private volatile InputStream inputStream;
@@ -49,7 +50,7 @@ public class ByteBufferStream {
         boolean direct,
         ByteBufferPool bufferPool
     ) {
-        this(bufferPool.acquire(capacity, direct), bufferPool);
+        this(bufferPool.acquireRetainable(capacity, direct), bufferPool);
     }
 
     public ByteBufferStream(ByteBuffer buffer) {
@@ -57,7 +58,26 @@ public class ByteBufferStream {
     }
 
     public ByteBufferStream(ByteBuffer buffer, ByteBufferPool bufferPool) {
+        this(new RetainableByteBuffer(buffer, bufferPool), bufferPool);
+    }
+
+    public ByteBufferStream(
+        RetainableByteBuffer retainable,
+        ByteBufferPool bufferPool
+    ) {
+        this(retainable.getBuffer(), retainable, bufferPool);
+    }
+
+    /**
+     * 共享 RetainableByteBuffer 的视图，调用前需要先 retain
+     */
+    public ByteBufferStream(
+        ByteBuffer buffer,
+        RetainableByteBuffer retainable,
+        ByteBufferPool bufferPool
+    ) {
         this.bufferPool = bufferPool;
+        this.retainable = retainable;
         this.buffer = buffer;
     }
 
@@ -78,15 +98,24 @@ public class ByteBufferStream {
     }
 
     private void grow(int n) {
+        if (buffer.isReadOnly()) {
+            this.copyOnWrite(n);
+        }
         if (buffer.remaining() < n) {
             int required = buffer.position() + n;
             if (required > buffer.capacity()) {
                 int size = this.calculateNewCapacity(required);
-                ByteBuffer buf =
-                    this.bufferPool.acquire(size, this.buffer.isDirect());
+                RetainableByteBuffer retained =
+                    this.bufferPool.acquireRetainable(
+                            size,
+                            this.buffer.isDirect()
+                        );
+                ByteBuffer buf = retained.getBuffer();
                 buffer.flip();
                 buf.put(buffer);
-                this.bufferPool.release(buffer);
+                // 旧的 Buffer 可能还被 duplicate/slice 引用，只释放当前的引用
+                retainable.release();
+                retainable = retained;
                 buffer = buf;
             } else {
                 buffer.limit(required);
@@ -94,6 +123,30 @@ public class ByteBufferStream {
         }
     }
 
+    /**
+     * 只读的 Buffer（如内存映射的区域）首次写入时，将全部内容复制到对象池申请的 Buffer 中，保持 position 和 limit 不变
+     */
+    private void copyOnWrite(int n) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        int size = this.calculateNewCapacity(
+                Math.max(buffer.capacity(), position + n)
+            );
+        RetainableByteBuffer retained = this.bufferPool.acquireRetainable(
+                size,
+                this.buffer.isDirect()
+            );
+        ByteBuffer buf = retained.getBuffer();
+        ByteBuffer src = buffer.duplicate();
+        src.clear();
+        buf.put(src);
+        buf.limit(limit);
+        buf.position(position);
+        retainable.release();
+        retainable = retained;
+        buffer = buf;
+    }
+
     private int calculateNewCapacity(int minNewCapacity) {
         // 4 MiB page
         final int threshold = 1048576 * 4;
@@ -231,7 +284,11 @@ public class ByteBufferStream {
     }
 
     public final ByteBufferStream duplicate() {
-        return new ByteBufferStream(this.buffer.duplicate(), this.bufferPool);
+        return new ByteBufferStream(
+            this.buffer.duplicate(),
+            this.retainable.retain(),
+            this.bufferPool
+        );
     }
 
     public final boolean hasRemaining() {
@@ -271,7 +328,20 @@ public class ByteBufferStream {
     }
 
     public final ByteBufferStream slice() {
-        return new ByteBufferStream(buffer.slice(), this.bufferPool);
+        return new ByteBufferStream(
+            buffer.slice(),
+            this.retainable.retain(),
+            this.bufferPool
+        );
+    }
+
+    public final ByteBufferStream retain() {
+        this.retainable.retain();
+        return this;
+    }
+
+    public final boolean isRetained() {
+        return this.retainable.isRetained();
     }
 
     public final void readFrom(ByteChannel channel, int length)
@@ -292,17 +362,33 @@ public class ByteBufferStream {
     }
 
     public final void readFrom(InputStream stream) throws IOException {
-        byte[] bytes = new byte[8192];
+        if (!buffer.hasArray()) {
+            byte[] bytes = new byte[8192];
+            for (;;) {
+                int length = stream.read(bytes);
+                if (length == -1) {
+                    break;
+                }
+                write(bytes, 0, length);
+            }
+            return;
+        }
+        // 堆内存直接读取到底层数组，不经过临时数组
         for (;;) {
-            int length = stream.read(bytes);
+            grow(8192);
+            int length = stream.read(
+                buffer.array(),
+                buffer.arrayOffset() + buffer.position(),
+                buffer.remaining()
+            );
             if (length == -1) {
                 break;
             }
-            write(bytes, 0, length);
+            buffer.position(buffer.position() + length);
         }
     }
 
-    public final void writeTo(ByteChannel channel) throws IOException {
+    public void writeTo(ByteChannel channel) throws IOException {
         while (buffer.hasRemaining()) {
             channel.write(buffer);
         }
@@ -315,6 +401,7 @@ public class ByteBufferStream {
                 buffer.arrayOffset() + buffer.position(),
                 buffer.remaining()
             );
+            buffer.position(buffer.limit());
         } else {
             byte[] bytes = new byte[8192];
             for (;;) {
@@ -329,7 +416,8 @@ public class ByteBufferStream {
 
     public final void close() {
         if (buffer != null) {
-            this.bufferPool.release(buffer);
+            this.retainable.release();
+            retainable = null;
             buffer = null;
         }
     }
@@ -355,4 +443,8 @@ public class ByteBufferStream {
     public ByteBuffer getBuffer() {
         return buffer;
     }
+
+    public RetainableByteBuffer getRetainable() {
+        return retainable;
+    }
 }
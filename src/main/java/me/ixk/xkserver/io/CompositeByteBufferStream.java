@@ -0,0 +1,684 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 复合 ByteBufferStream
+ * <p>
+ * 由多个固定大小的池化 Buffer 块组成，扩容时只需要追加新的块，不会复制已有的数据，写出时使用 Gathering IO
+ * <p>
+ * 读写指针相互独立，写入的数据即可被读取，flip 仅为保持与 ByteBufferStream 相同的用法
+ *
+ * @author Otstar Lin
+ * @date 2021/1/13 上午 10:22
+ */
+public class CompositeByteBufferStream {
+    private static final int DEFAULT_CHUNK_SIZE = 4096;
+    private static final ByteBuffer[] EMPTY_BUFFERS = new ByteBuffer[0];
+
+    private final ByteBufferPool bufferPool;
+    private final int chunkSize;
+    private final boolean direct;
+    private final List<Component> components;
+
+    private int readIndex = 0;
+    private long size = 0;
+    private long readed = 0;
+
+    private int markIndex = -1;
+    private int markPosition = -1;
+    private long markReaded = -1;
+
+    public CompositeByteBufferStream() {
+        this(ByteBufferPool.defaultPool());
+    }
+
+    public CompositeByteBufferStream(ByteBufferPool bufferPool) {
+        this(DEFAULT_CHUNK_SIZE, bufferPool);
+    }
+
+    public CompositeByteBufferStream(int chunkSize) {
+        this(chunkSize, ByteBufferPool.defaultPool());
+    }
+
+    public CompositeByteBufferStream(int chunkSize, ByteBufferPool bufferPool) {
+        this(chunkSize, false, bufferPool);
+    }
+
+    public CompositeByteBufferStream(
+        int chunkSize,
+        boolean direct,
+        ByteBufferPool bufferPool
+    ) {
+        this(chunkSize, direct, bufferPool, new ArrayList<>());
+    }
+
+    private CompositeByteBufferStream(
+        int chunkSize,
+        boolean direct,
+        ByteBufferPool bufferPool,
+        List<Component> components
+    ) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+        this.direct = direct;
+        this.bufferPool = bufferPool;
+        this.components = components;
+    }
+
+    /**
+     * 获取可写入的块，尾部的块已满或者不属于当前 Stream 时申请新的块
+     */
+    private Component writable() {
+        final int count = this.components.size();
+        if (count > 0) {
+            final Component tail = this.components.get(count - 1);
+            if (tail.writable && tail.writeRemaining() > 0) {
+                return tail;
+            }
+        }
+        final RetainableByteBuffer retainable =
+            this.bufferPool.acquireRetainable(this.chunkSize, this.direct);
+        final ByteBuffer buffer = retainable.getBuffer();
+        buffer.clear().limit(0);
+        final Component component = new Component(
+            retainable,
+            buffer,
+            0,
+            true
+        );
+        this.components.add(component);
+        return component;
+    }
+
+    private Component readable() {
+        while (this.readIndex < this.components.size()) {
+            final Component component = this.components.get(this.readIndex);
+            if (component.buffer.hasRemaining()) {
+                return component;
+            }
+            if (this.readIndex == this.components.size() - 1) {
+                // 最后一个块可能还会继续写入，不移动读指针
+                return null;
+            }
+            this.readIndex++;
+        }
+        return null;
+    }
+
+    public final int read() {
+        final Component component = this.readable();
+        if (component == null) {
+            return -1;
+        }
+        this.readed++;
+        return component.buffer.get() & 0xff;
+    }
+
+    public final int read(byte[] bytes) {
+        return read(bytes, 0, bytes.length);
+    }
+
+    public final int read(byte[] bytes, int offset, int length) {
+        if (length <= 0) {
+            return 0;
+        }
+        int total = 0;
+        while (total < length) {
+            final Component component = this.readable();
+            if (component == null) {
+                break;
+            }
+            final int n = Math.min(
+                length - total,
+                component.buffer.remaining()
+            );
+            component.buffer.get(bytes, offset + total, n);
+            total += n;
+        }
+        this.readed += total;
+        return total == 0 ? -1 : total;
+    }
+
+    public final int read(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            return 0;
+        }
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            final Component component = this.readable();
+            if (component == null) {
+                break;
+            }
+            final ByteBuffer src = component.buffer;
+            final int n = Math.min(buffer.remaining(), src.remaining());
+            final int limit = src.limit();
+            src.limit(src.position() + n);
+            buffer.put(src);
+            src.limit(limit);
+            total += n;
+        }
+        this.readed += total;
+        return total == 0 ? -1 : total;
+    }
+
+    /**
+     * 以视图的方式读取下一个块的全部剩余内容，不复制数据
+     *
+     * @return 已 retain 的视图，使用完毕后需要 close，没有内容时返回 null
+     */
+    public final ByteBufferStream readBuffer() {
+        final Component component = this.readable();
+        if (component == null) {
+            return null;
+        }
+        final ByteBuffer view = component.buffer.slice();
+        component.buffer.position(component.buffer.limit());
+        this.readed += view.remaining();
+        return new ByteBufferStream(
+            view,
+            component.retainable.retain(),
+            this.bufferPool
+        );
+    }
+
+    /**
+     * 以视图的方式读取下一个块的全部剩余内容，不复制数据，也不增加引用计数
+     *
+     * @return 只读视图，在当前 Stream close 之前有效，没有内容时返回 null
+     */
+    public final ByteBuffer readByteBuffer() {
+        final Component component = this.readable();
+        if (component == null) {
+            return null;
+        }
+        final ByteBuffer view = component.buffer.slice().asReadOnlyBuffer();
+        component.buffer.position(component.buffer.limit());
+        this.readed += view.remaining();
+        return view;
+    }
+
+    /**
+     * 读取一行，包含行尾的 LF，最多读取 length 个字节
+     *
+     * @return 读取的字节数，没有内容时返回 -1
+     */
+    public final int readLine(byte[] bytes, int offset, int length) {
+        if (length <= 0) {
+            return 0;
+        }
+        int total = 0;
+        boolean eol = false;
+        while (total < length && !eol) {
+            final Component component = this.readable();
+            if (component == null) {
+                break;
+            }
+            final ByteBuffer buffer = component.buffer;
+            final int position = buffer.position();
+            final int max = Math.min(length - total, buffer.remaining());
+            int n = 0;
+            while (n < max) {
+                if (buffer.get(position + n++) == '\n') {
+                    eol = true;
+                    break;
+                }
+            }
+            buffer.get(bytes, offset + total, n);
+            total += n;
+        }
+        this.readed += total;
+        return total == 0 ? -1 : total;
+    }
+
+    public final long skip(long length) {
+        if (length <= 0) {
+            return 0;
+        }
+        long total = 0;
+        while (total < length) {
+            final Component component = this.readable();
+            if (component == null) {
+                break;
+            }
+            final ByteBuffer buffer = component.buffer;
+            final int n = (int) Math.min(length - total, buffer.remaining());
+            buffer.position(buffer.position() + n);
+            total += n;
+        }
+        this.readed += total;
+        return total;
+    }
+
+    public final int available() {
+        return (int) Math.min(this.remainingLong(), Integer.MAX_VALUE);
+    }
+
+    public final boolean markSupported() {
+        return true;
+    }
+
+    public final void mark() {
+        this.markIndex = this.readIndex;
+        this.markPosition =
+            this.readIndex < this.components.size()
+                ? this.components.get(this.readIndex).buffer.position()
+                : 0;
+        this.markReaded = this.readed;
+    }
+
+    public final void reset() {
+        if (this.markIndex < 0) {
+            throw new IllegalStateException("Mark is not set");
+        }
+        final int end = Math.min(this.readIndex, this.components.size() - 1);
+        for (int i = this.markIndex + 1; i <= end; i++) {
+            final Component component = this.components.get(i);
+            component.buffer.position(component.start);
+        }
+        if (this.markIndex < this.components.size()) {
+            this.components.get(this.markIndex)
+                .buffer.position(this.markPosition);
+        }
+        this.readIndex = this.markIndex;
+        this.readed = this.markReaded;
+    }
+
+    public final void write(int b) {
+        final Component component = this.writable();
+        component.put((byte) b);
+        this.size++;
+    }
+
+    public final void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    public final void write(byte[] bytes, int offset, int length) {
+        int written = 0;
+        while (written < length) {
+            final Component component = this.writable();
+            final int n = Math.min(
+                length - written,
+                component.writeRemaining()
+            );
+            component.put(bytes, offset + written, n);
+            written += n;
+        }
+        this.size += length;
+    }
+
+    public final void write(ByteBuffer buffer) {
+        final int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            final Component component = this.writable();
+            final int n = Math.min(
+                buffer.remaining(),
+                component.writeRemaining()
+            );
+            final int limit = buffer.limit();
+            buffer.limit(buffer.position() + n);
+            component.put(buffer);
+            buffer.limit(limit);
+        }
+        this.size += length;
+    }
+
+    public final void write(ByteBufferStream buffer) {
+        this.write(buffer.getBuffer());
+    }
+
+    /**
+     * 追加 Buffer 视图，不复制数据
+     * <p>
+     * 调用后 Buffer 的引用转移到当前 Stream，调用方不需要再 close
+     *
+     * @param buffer Buffer 视图
+     */
+    public final void append(ByteBufferStream buffer) {
+        final ByteBuffer view = buffer.getBuffer();
+        if (!view.hasRemaining()) {
+            buffer.close();
+            return;
+        }
+        this.components.add(
+                new Component(
+                    buffer.getRetainable(),
+                    view,
+                    view.position(),
+                    false
+                )
+            );
+        this.size += view.remaining();
+    }
+
+    /**
+     * 追加非池化的 Buffer，不复制数据
+     *
+     * @param buffer ByteBuffer
+     */
+    public final void append(ByteBuffer buffer) {
+        this.append(
+                new ByteBufferStream(
+                    buffer,
+                    new RetainableByteBuffer(buffer),
+                    this.bufferPool
+                )
+            );
+    }
+
+    /**
+     * 读写指针相互独立，无需切换，保留该方法用于兼容 ByteBufferStream 的用法
+     */
+    public final void flip() {}
+
+    public final void rewind() {
+        for (final Component component : this.components) {
+            component.buffer.position(component.start);
+        }
+        this.readIndex = 0;
+        this.readed = 0;
+        this.markIndex = -1;
+    }
+
+    /**
+     * 释放已经读取完毕的块，释放后无法再 rewind 或 reset 到这些块
+     */
+    public final void discardReadComponents() {
+        int discard = 0;
+        final int last = this.components.size() - 1;
+        while (discard < last) {
+            final Component component = this.components.get(discard);
+            if (component.buffer.hasRemaining()) {
+                break;
+            }
+            discard++;
+        }
+        if (discard == 0) {
+            return;
+        }
+        long discarded = 0;
+        for (int i = 0; i < discard; i++) {
+            final Component component = this.components.get(i);
+            discarded += component.buffer.limit() - component.start;
+            component.retainable.release();
+        }
+        this.components.subList(0, discard).clear();
+        this.readIndex = Math.max(this.readIndex - discard, 0);
+        this.size -= discarded;
+        this.readed -= discarded;
+        this.markIndex = -1;
+    }
+
+    public final byte[] toArray() {
+        final byte[] data = new byte[this.available()];
+        this.read(data);
+        return data;
+    }
+
+    public final CompositeByteBufferStream duplicate() {
+        final List<Component> components = new ArrayList<>(
+            this.components.size()
+        );
+        for (final Component component : this.components) {
+            components.add(
+                new Component(
+                    component.retainable.retain(),
+                    component.buffer.duplicate(),
+                    component.start,
+                    false
+                )
+            );
+        }
+        final CompositeByteBufferStream stream = new CompositeByteBufferStream(
+            this.chunkSize,
+            this.direct,
+            this.bufferPool,
+            components
+        );
+        stream.readIndex = this.readIndex;
+        stream.size = this.size;
+        stream.readed = this.readed;
+        return stream;
+    }
+
+    public final boolean hasRemaining() {
+        return this.remainingLong() > 0;
+    }
+
+    public final int remaining() {
+        return this.available();
+    }
+
+    public final long remainingLong() {
+        return this.size - this.readed;
+    }
+
+    public final long size() {
+        return this.size;
+    }
+
+    public final int componentCount() {
+        return this.components.size();
+    }
+
+    public final boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * 获取剩余内容的 Buffer 视图，用于 Gathering IO
+     *
+     * @return Buffer 视图
+     */
+    public final ByteBuffer[] getBuffers() {
+        final int count = this.components.size() - this.readIndex;
+        if (count <= 0) {
+            return EMPTY_BUFFERS;
+        }
+        final ByteBuffer[] buffers = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            buffers[i] =
+                this.components.get(this.readIndex + i).buffer.duplicate();
+        }
+        return buffers;
+    }
+
+    public final void readFrom(ReadableByteChannel channel, int length)
+        throws IOException {
+        int readed = 0;
+        while (readed < length) {
+            final Component component = this.writable();
+            final int n = Math.min(length - readed, component.writeRemaining());
+            final int curr = component.readFrom(channel, n);
+            if (curr == -1) {
+                break;
+            }
+            readed += curr;
+            this.size += curr;
+        }
+        if (readed < length) {
+            throw new IllegalStateException("Unexpected EOF");
+        }
+    }
+
+    public final void readFrom(InputStream stream) throws IOException {
+        for (;;) {
+            final Component component = this.writable();
+            final int length = component.readFrom(stream);
+            if (length == -1) {
+                break;
+            }
+            this.size += length;
+        }
+    }
+
+    /**
+     * 尽可能写出剩余的内容，非阻塞的 Channel 写不进时直接返回，由调用方等待 OP_WRITE 后再次写出
+     *
+     * @param channel 目标 Channel
+     *
+     * @return 本次写出的字节数
+     */
+    public final long writeTo(GatheringByteChannel channel)
+        throws IOException {
+        long total = 0;
+        while (this.hasRemaining()) {
+            final long length = channel.write(this.getBuffers());
+            if (length <= 0) {
+                break;
+            }
+            this.skip(length);
+            total += length;
+        }
+        return total;
+    }
+
+    public final void writeTo(OutputStream stream) throws IOException {
+        byte[] bytes = null;
+        while (true) {
+            final Component component = this.readable();
+            if (component == null) {
+                break;
+            }
+            final ByteBuffer buffer = component.buffer;
+            final int length = buffer.remaining();
+            if (buffer.hasArray()) {
+                stream.write(
+                    buffer.array(),
+                    buffer.arrayOffset() + buffer.position(),
+                    length
+                );
+                buffer.position(buffer.limit());
+            } else {
+                if (bytes == null) {
+                    bytes = new byte[Math.min(this.chunkSize, 8192)];
+                }
+                while (buffer.hasRemaining()) {
+                    final int n = Math.min(bytes.length, buffer.remaining());
+                    buffer.get(bytes, 0, n);
+                    stream.write(bytes, 0, n);
+                }
+            }
+            this.readed += length;
+        }
+    }
+
+    public final void close() {
+        for (final Component component : this.components) {
+            component.retainable.release();
+        }
+        this.components.clear();
+        this.readIndex = 0;
+        this.size = 0;
+        this.readed = 0;
+        this.markIndex = -1;
+    }
+
+    public ByteBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    private static class Component {
+        private final RetainableByteBuffer retainable;
+        /**
+         * position 为读指针，limit 为已写入数据的末尾
+         */
+        private final ByteBuffer buffer;
+        private final int start;
+        /**
+         * 是否为当前 Stream 申请的块，只有这种块才允许继续写入
+         */
+        private final boolean writable;
+
+        private Component(
+            final RetainableByteBuffer retainable,
+            final ByteBuffer buffer,
+            final int start,
+            final boolean writable
+        ) {
+            this.retainable = retainable;
+            this.buffer = buffer;
+            this.start = start;
+            this.writable = writable;
+        }
+
+        private int writeRemaining() {
+            return this.buffer.capacity() - this.buffer.limit();
+        }
+
+        private void put(final byte b) {
+            final int limit = this.buffer.limit();
+            this.buffer.limit(limit + 1);
+            this.buffer.put(limit, b);
+        }
+
+        private void put(final byte[] bytes, final int offset, final int length) {
+            final int position = this.buffer.position();
+            final int limit = this.buffer.limit();
+            this.buffer.limit(limit + length).position(limit);
+            this.buffer.put(bytes, offset, length);
+            this.buffer.position(position);
+        }
+
+        private void put(final ByteBuffer src) {
+            final int position = this.buffer.position();
+            final int limit = this.buffer.limit();
+            this.buffer.limit(limit + src.remaining()).position(limit);
+            this.buffer.put(src);
+            this.buffer.position(position);
+        }
+
+        private int readFrom(final ReadableByteChannel channel, final int length)
+            throws IOException {
+            final int position = this.buffer.position();
+            final int limit = this.buffer.limit();
+            this.buffer.limit(limit + length).position(limit);
+            try {
+                return channel.read(this.buffer);
+            } finally {
+                this.buffer.limit(this.buffer.position()).position(position);
+            }
+        }
+
+        private int readFrom(final InputStream stream) throws IOException {
+            final int limit = this.buffer.limit();
+            final int length = this.writeRemaining();
+            if (this.buffer.hasArray()) {
+                final int n = stream.read(
+                    this.buffer.array(),
+                    this.buffer.arrayOffset() + limit,
+                    length
+                );
+                if (n > 0) {
+                    this.buffer.limit(limit + n);
+                }
+                return n;
+            }
+            final byte[] bytes = new byte[length];
+            final int n = stream.read(bytes, 0, length);
+            if (n > 0) {
+                this.put(bytes, 0, n);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.io;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+/**
+ * Inflater 对象池
+ * <p>
+ * Inflater 持有本地内存，创建和 end 的开销较大，使用完毕后 reset 复用
+ *
+ * @author Otstar Lin
+ * @date 2021/1/18 上午 9:50
+ */
+public class InflaterPool {
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final InflaterPool DEFAULT_POOL = new InflaterPool(
+        DEFAULT_CAPACITY
+    );
+
+    private final int capacity;
+    private final Deque<Inflater> nowrapInflaters = new ConcurrentLinkedDeque<>();
+    private final Deque<Inflater> inflaters = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    /**
+     * @param capacity 缓存的 Inflater 数量上限
+     */
+    public InflaterPool(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    public static InflaterPool defaultPool() {
+        return DEFAULT_POOL;
+    }
+
+    /**
+     * 获取 Inflater
+     *
+     * @param nowrap 是否不包含 zlib 头部，GZIP 需要设为 true
+     *
+     * @return Inflater
+     */
+    public Inflater acquire(final boolean nowrap) {
+        final Inflater inflater = this.deque(nowrap).pollFirst();
+        if (inflater == null) {
+            return new Inflater(nowrap);
+        }
+        this.size.decrementAndGet();
+        return inflater;
+    }
+
+    /**
+     * 归还 Inflater，nowrap 需要和 acquire 时一致
+     */
+    public void release(final Inflater inflater, final boolean nowrap) {
+        if (inflater == null) {
+            return;
+        }
+        if (this.size.incrementAndGet() > this.capacity) {
+            this.size.decrementAndGet();
+            inflater.end();
+            return;
+        }
+        inflater.reset();
+        this.deque(nowrap).offerFirst(inflater);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private Deque<Inflater> deque(final boolean nowrap) {
+        return nowrap ? this.nowrapInflaters : this.inflaters;
+    }
+}
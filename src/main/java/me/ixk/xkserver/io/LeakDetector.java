@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.io;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 泄漏检测
+ * <p>
+ * 按采样间隔记录资源获取时的调用栈，资源在未释放的情况下被 GC 回收时输出泄漏信息
+ *
+ * @author Otstar Lin
+ * @date 2021/1/12 下午 3:05
+ */
+@Slf4j
+public class LeakDetector {
+    public static final String LEVEL_PROPERTY =
+        "me.ixk.xkserver.leakDetection.level";
+    public static final String INTERVAL_PROPERTY =
+        "me.ixk.xkserver.leakDetection.interval";
+    private static final int DEFAULT_INTERVAL = 128;
+    private static final int MAX_RECORDS = 8;
+
+    private static final LeakDetector DEFAULT_DETECTOR = new LeakDetector(
+        Level.valueOf(
+            System.getProperty(LEVEL_PROPERTY, Level.SAMPLE.name())
+        ),
+        Integer.getInteger(INTERVAL_PROPERTY, DEFAULT_INTERVAL)
+    );
+
+    public enum Level {
+        /**
+         * 关闭
+         */
+        DISABLED,
+        /**
+         * 按采样间隔检测，只记录获取时的调用栈
+         */
+        SAMPLE,
+        /**
+         * 检测所有资源，同时记录每次 retain/release 的调用栈
+         */
+        PARANOID,
+    }
+
+    private final Level level;
+    private final int samplingInterval;
+    private final AtomicLong counter = new AtomicLong(0);
+    private final AtomicLong leakCount = new AtomicLong(0);
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final Set<Leak> tracked = ConcurrentHashMap.newKeySet();
+
+    public LeakDetector(final Level level) {
+        this(level, DEFAULT_INTERVAL);
+    }
+
+    public LeakDetector(final Level level, final int samplingInterval) {
+        this.level = level;
+        this.samplingInterval = Math.max(samplingInterval, 1);
+    }
+
+    public static LeakDetector defaultDetector() {
+        return DEFAULT_DETECTOR;
+    }
+
+    public Leak track(final Object resource) {
+        this.reportLeaks();
+        switch (this.level) {
+            case DISABLED:
+                return null;
+            case SAMPLE:
+                if (
+                    this.counter.getAndIncrement() % this.samplingInterval != 0
+                ) {
+                    return null;
+                }
+                break;
+            default:
+                break;
+        }
+        final Leak leak = new Leak(resource);
+        this.tracked.add(leak);
+        return leak;
+    }
+
+    /**
+     * 检查已被 GC 回收但未释放的资源
+     */
+    public void reportLeaks() {
+        Leak leak;
+        while ((leak = (Leak) this.queue.poll()) != null) {
+            if (this.tracked.remove(leak)) {
+                this.leakCount.incrementAndGet();
+                this.leaked(leak);
+            }
+        }
+    }
+
+    protected void leaked(final Leak leak) {
+        log.error("Resource leak detected: {}", leak, leak.getAcquired());
+        for (final Throwable record : leak.getRecords()) {
+            log.error("Recent access of leaked resource", record);
+        }
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    public long getLeakCount() {
+        return this.leakCount.get();
+    }
+
+    public Set<Leak> getTracked() {
+        return Collections.unmodifiableSet(this.tracked);
+    }
+
+    public class Leak extends WeakReference<Object> {
+        private final String description;
+        private final Throwable acquired;
+        private final Deque<Throwable> records;
+
+        private Leak(final Object resource) {
+            super(resource, LeakDetector.this.queue);
+            this.description = resource.toString();
+            this.acquired =
+                new Throwable(
+                    "Acquired at " + Thread.currentThread().getName()
+                );
+            this.records =
+                LeakDetector.this.level == Level.PARANOID
+                    ? new ArrayDeque<>(MAX_RECORDS)
+                    : null;
+        }
+
+        public void record() {
+            if (this.records == null) {
+                return;
+            }
+            synchronized (this.records) {
+                if (this.records.size() >= MAX_RECORDS) {
+                    this.records.pollFirst();
+                }
+                this.records.offerLast(
+                        new Throwable(
+                            "Accessed at " + Thread.currentThread().getName()
+                        )
+                    );
+            }
+        }
+
+        public void close() {
+            LeakDetector.this.tracked.remove(this);
+            this.clear();
+        }
+
+        public Throwable getAcquired() {
+            return acquired;
+        }
+
+        public List<Throwable> getRecords() {
+            if (this.records == null) {
+                return Collections.emptyList();
+            }
+            synchronized (this.records) {
+                return List.copyOf(this.records);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.description;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 内存映射 ByteBufferStream
+ * <p>
+ * 直接读取 FileChannel 映射的区域，数据由 Page Cache 提供，不会复制到堆内存，写出到 Channel 时使用 transferTo
+ * <p>
+ * 映射的内容是只读的，首次写入时会将全部内容复制到对象池申请的 Buffer 中，之后按普通 Buffer 写出
+ *
+ * @author Otstar Lin
+ * @date 2021/1/14 上午 9:40
+ */
+public class MappedByteBufferStream extends ByteBufferStream {
+    private final FileChannel channel;
+    private final long offset;
+    private final MappedByteBuffer mapped;
+
+    private MappedByteBufferStream(
+        final FileChannel channel,
+        final long offset,
+        final MappedByteBuffer mapped
+    ) {
+        super(
+            mapped,
+            new MappedRetainableByteBuffer(mapped, channel),
+            ByteBufferPool.defaultPool()
+        );
+        this.channel = channel;
+        this.offset = offset;
+        this.mapped = mapped;
+    }
+
+    public static MappedByteBufferStream map(final Path path)
+        throws IOException {
+        final FileChannel channel = FileChannel.open(
+            path,
+            StandardOpenOption.READ
+        );
+        try {
+            return map(channel, 0, channel.size());
+        } catch (final IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 映射 FileChannel 的区域，Stream 关闭后同时关闭 FileChannel
+     *
+     * @param channel FileChannel
+     * @param offset  起始位置
+     * @param length  长度，不能超过 Integer.MAX_VALUE
+     *
+     * @return MappedByteBufferStream
+     */
+    public static MappedByteBufferStream map(
+        final FileChannel channel,
+        final long offset,
+        final long length
+    ) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                "Mapped region is too large: " + length
+            );
+        }
+        return new MappedByteBufferStream(
+            channel,
+            offset,
+            channel.map(MapMode.READ_ONLY, offset, length)
+        );
+    }
+
+    /**
+     * 内容仍然是映射的区域时使用 FileChannel.transferTo 写出，否则按普通 Buffer 写出
+     */
+    @Override
+    public void writeTo(final ByteChannel channel) throws IOException {
+        final ByteBuffer buffer = this.getBuffer();
+        if (buffer != this.mapped || !this.channel.isOpen()) {
+            super.writeTo(channel);
+            return;
+        }
+        long position = this.offset + buffer.position();
+        long count = buffer.remaining();
+        while (count > 0) {
+            final long length = this.channel.transferTo(
+                position,
+                count,
+                channel
+            );
+            position += length;
+            count -= length;
+        }
+        buffer.position(buffer.limit());
+    }
+
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    private static class MappedRetainableByteBuffer
+        extends RetainableByteBuffer {
+        private final FileChannel channel;
+
+        private MappedRetainableByteBuffer(
+            final ByteBuffer buffer,
+            final FileChannel channel
+        ) {
+            super(buffer);
+            this.channel = channel;
+        }
+
+        @Override
+        public boolean release() {
+            final boolean released = super.release();
+            if (released) {
+                // 映射的内存由 GC 回收，这里只关闭 FileChannel
+                try {
+                    this.channel.close();
+                } catch (final IOException e) {
+                    // ignore
+                }
+            }
+            return released;
+        }
+    }
+}
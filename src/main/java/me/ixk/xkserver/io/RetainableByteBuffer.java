@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 引用计数 ByteBuffer
+ * <p>
+ * 同一块内存可以被多个视图（duplicate/slice）共享，只有最后一个引用释放后才会归还到 ByteBufferPool
+ *
+ * @author Otstar Lin
+ * @date 2021/1/12 下午 2:18
+ */
+public class RetainableByteBuffer {
+    private final ByteBuffer buffer;
+    private final ByteBufferPool bufferPool;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final LeakDetector.Leak leak;
+
+    public RetainableByteBuffer(final ByteBuffer buffer) {
+        this(buffer, null);
+    }
+
+    public RetainableByteBuffer(
+        final ByteBuffer buffer,
+        final ByteBufferPool bufferPool
+    ) {
+        this(buffer, bufferPool, null);
+    }
+
+    RetainableByteBuffer(
+        final ByteBuffer buffer,
+        final ByteBufferPool bufferPool,
+        final LeakDetector leakDetector
+    ) {
+        this.buffer = buffer;
+        this.bufferPool = bufferPool;
+        this.leak = leakDetector == null ? null : leakDetector.track(this);
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public ByteBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public int refCount() {
+        return this.references.get();
+    }
+
+    public boolean isRetained() {
+        return this.references.get() > 1;
+    }
+
+    public boolean isReleased() {
+        return this.references.get() <= 0;
+    }
+
+    public RetainableByteBuffer retain() {
+        while (true) {
+            final int count = this.references.get();
+            if (count <= 0) {
+                throw new IllegalStateException(
+                    "Buffer has been released: " + this
+                );
+            }
+            if (this.references.compareAndSet(count, count + 1)) {
+                break;
+            }
+        }
+        if (this.leak != null) {
+            this.leak.record();
+        }
+        return this;
+    }
+
+    /**
+     * 释放一个引用
+     *
+     * @return 是否已经归还到对象池（最后一个引用）
+     */
+    public boolean release() {
+        final int count = this.references.decrementAndGet();
+        if (count > 0) {
+            if (this.leak != null) {
+                this.leak.record();
+            }
+            return false;
+        }
+        if (count < 0) {
+            this.references.set(0);
+            throw new IllegalStateException(
+                "Buffer has been released: " + this
+            );
+        }
+        if (this.leak != null) {
+            this.leak.close();
+        }
+        if (this.bufferPool != null) {
+            this.bufferPool.release(this.buffer);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "RetainableByteBuffer@%x{r=%d,%s}",
+            hashCode(),
+            this.references.get(),
+            this.buffer
+        );
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 字节前缀树
+ * <p>
+ * 只支持 Ascii 键，可以直接使用 byte[] 或 ByteBuffer 的区间查找，不需要先创建 String
+ * <p>
+ * 构建完成后只读，多线程读取是安全的
+ *
+ * @author Otstar Lin
+ * @date 2021/1/15 上午 10:12
+ */
+public class ByteTrie<V> {
+    private final boolean ignoreCase;
+    private final Node<V> root = new Node<>();
+    private int size = 0;
+
+    public ByteTrie() {
+        this(true);
+    }
+
+    public ByteTrie(final boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    public V put(final String key, final V value) {
+        Node<V> node = this.root;
+        for (int i = 0; i < key.length(); i++) {
+            final char c = key.charAt(i);
+            if (c > 0x7f) {
+                throw new IllegalArgumentException(
+                    "Key must be ascii: " + key
+                );
+            }
+            node = node.getOrCreate(this.fold((byte) c));
+        }
+        final V old = node.value;
+        node.value = value;
+        if (old == null) {
+            this.size++;
+        }
+        return old;
+    }
+
+    public V get(final String key) {
+        return this.get(key, 0, key.length());
+    }
+
+    /**
+     * 查找 String 的区间，不需要先 substring
+     */
+    public V get(final String key, final int offset, final int length) {
+        Node<V> node = this.root;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            final char c = key.charAt(i);
+            if (c > 0x7f) {
+                return null;
+            }
+            node = node.get(this.fold((byte) c));
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.value;
+    }
+
+    public V get(final byte[] bytes, final int offset, final int length) {
+        Node<V> node = this.root;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            node = node.get(this.fold(bytes[i]));
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.value;
+    }
+
+    /**
+     * 使用绝对位置查找，不修改 ByteBuffer 的 position
+     */
+    public V get(final ByteBuffer buffer, final int index, final int length) {
+        if (buffer.hasArray()) {
+            return this.get(
+                    buffer.array(),
+                    buffer.arrayOffset() + index,
+                    length
+                );
+        }
+        Node<V> node = this.root;
+        for (int i = index, end = index + length; i < end; i++) {
+            node = node.get(this.fold(buffer.get(i)));
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    private byte fold(final byte b) {
+        if (this.ignoreCase && b >= 'A' && b <= 'Z') {
+            return (byte) (b | 0x20);
+        }
+        return b;
+    }
+
+    private static class Node<V> {
+        private static final byte[] EMPTY_KEYS = new byte[0];
+
+        private byte[] keys = EMPTY_KEYS;
+        private Node<V>[] children;
+        private V value;
+
+        private Node<V> get(final byte key) {
+            final byte[] keys = this.keys;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node<V> getOrCreate(final byte key) {
+            final Node<V> child = this.get(key);
+            if (child != null) {
+                return child;
+            }
+            final int length = this.keys.length;
+            final Node<V> node = new Node<>();
+            this.keys = Arrays.copyOf(this.keys, length + 1);
+            this.keys[length] = key;
+            this.children =
+                this.children == null
+                    ? newArray(1)
+                    : Arrays.copyOf(this.children, length + 1);
+            this.children[length] = node;
+            return node;
+        }
+
+        /**
+         * 泛型数组只能通过原始类型创建
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static <V> Node<V>[] newArray(final int length) {
+            return new Node[length];
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/21 上午 11:20
+ */
+class DateParserTest {
+    private static final long TIME = 784111777000L;
+
+    @Test
+    void parseStandardDate() {
+        assertEquals(
+            TIME,
+            DateParser.parseStandardDate("Sun, 06 Nov 1994 08:49:37 GMT")
+        );
+        assertEquals(
+            TIME,
+            DateParser.parseStandardDate("Sunday, 06-Nov-94 08:49:37 GMT")
+        );
+        assertEquals(
+            TIME,
+            DateParser.parseStandardDate("Sun Nov  6 08:49:37 1994")
+        );
+        assertEquals(
+            951782400000L,
+            DateParser.parseStandardDate("Tue, 29 Feb 2000 00:00:00 GMT")
+        );
+        assertEquals(-1, DateParser.parseStandardDate("Sun, 06 Nov 1994"));
+        assertEquals(
+            -1,
+            DateParser.parseStandardDate("Sun, 06 Foo 1994 08:49:37 GMT")
+        );
+    }
+
+    @Test
+    void parseDate() {
+        assertEquals(
+            TIME,
+            DateParser.parseDate("Sun, 06 Nov 1994 08:49:37 GMT")
+        );
+        // 非标准格式使用 SimpleDateFormat
+        assertEquals(TIME, DateParser.parseDate("06 Nov 1994 08:49:37 GMT"));
+        assertEquals(-1, DateParser.parseDate("invalid"));
+    }
+
+    @Test
+    void generate() {
+        assertEquals(
+            "Sun, 06 Nov 1994 08:49:37 GMT",
+            DateGenerator.formatDate(TIME)
+        );
+        assertEquals(
+            "Thu, 01 Jan 1970 00:00:00 GMT",
+            DateGenerator.formatDate(0)
+        );
+        final String date = DateGenerator.getDate();
+        assertTrue(
+            Math.abs(
+                DateParser.parseDate(date) - System.currentTimeMillis()
+            ) <=
+            2000
+        );
+        final ByteBuffer field = DateGenerator.getDateField();
+        assertTrue(field.isReadOnly());
+        assertEquals(
+            "Date: " + DateGenerator.getDate() + "\r\n",
+            StandardCharsets.ISO_8859_1.decode(field).toString()
+        );
+    }
+}
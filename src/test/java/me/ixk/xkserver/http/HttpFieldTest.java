@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import me.ixk.xkserver.http.HttpField.Params;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/20 上午 9:40
+ */
+class HttpFieldTest {
+
+    @Test
+    void params() {
+        final HttpField field = new HttpField(
+            HttpHeader.CONTENT_DISPOSITION,
+            List.of(
+                "form-data; name=\"a;b\"; filename=\"x\\\"y.txt\" ; Flag"
+            )
+        );
+        final Params params = field.getParams();
+        assertEquals("form-data", params.getValue());
+        assertEquals("a;b", params.get("name"));
+        assertEquals("x\"y.txt", params.get("FILENAME"));
+        assertEquals("", params.get("flag"));
+        assertNull(params.get("size"));
+        assertEquals("form-data", field.stripParam(0));
+    }
+
+    @Test
+    void cached() {
+        final HttpField field = new HttpField(
+            HttpHeader.CONTENT_TYPE,
+            new ArrayList<>(List.of("text/html; charset=UTF-8"))
+        );
+        assertSame(field.getParams(), field.getParams());
+        assertEquals("UTF-8", field.getParam("charset"));
+        field.addValue("text/plain");
+        assertEquals("text/plain", field.getParamValue(1));
+        assertEquals("text/html", field.getParamValue());
+    }
+}
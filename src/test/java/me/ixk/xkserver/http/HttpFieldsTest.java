@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/19 上午 9:45
+ */
+class HttpFieldsTest {
+
+    @Test
+    void putAndGet() {
+        final HttpFields fields = new HttpFields(4);
+        for (int i = 0; i < 20; i++) {
+            fields.put(
+                new HttpField("X-Field-" + i, List.of(String.valueOf(i)))
+            );
+        }
+        fields.put(new HttpField(HttpHeader.HOST, List.of("ixk.me")));
+        assertEquals(21, fields.size());
+        assertEquals("7", fields.getValue("x-field-7"));
+        assertEquals("7", fields.getValue("X-FIELD-7"));
+        assertEquals("ixk.me", fields.getValue("HOST"));
+        assertTrue(fields.containsKey("x-Field-19"));
+        assertFalse(fields.containsKey("x-field-20"));
+        fields.put(
+            "x-field-7",
+            new HttpField("X-Field-7", List.of("seven"))
+        );
+        assertEquals("seven", fields.getValue("X-Field-7"));
+        assertEquals(21, fields.size());
+    }
+
+    @Test
+    void order() {
+        final HttpFields fields = new HttpFields();
+        fields.put(new HttpField("C", List.of("3")));
+        fields.put(new HttpField("A", List.of("1")));
+        fields.put(new HttpField("B", List.of("2")));
+        fields.put(new HttpField("D", List.of("4")));
+        assertEquals("1", fields.remove("a").getValue());
+        assertNull(fields.get("A"));
+        final Iterator<Entry<String, HttpField>> iterator = fields
+            .entrySet()
+            .iterator();
+        iterator.next();
+        iterator.next();
+        iterator.remove();
+        final List<String> keys = new ArrayList<>(fields.keySet());
+        assertEquals(List.of("c", "d"), keys);
+        assertEquals("4", fields.getValue("D"));
+        fields.reset();
+        assertTrue(fields.isEmpty());
+        assertNull(fields.get("c"));
+    }
+
+    @Test
+    void getByHeader() {
+        final HttpFields fields = new HttpFields();
+        fields.put(new HttpField("X-Custom", List.of("custom")));
+        fields.put(new HttpField("content-type", List.of("text/html")));
+        fields.put("Host", new HttpField("Host", List.of("ixk.me")));
+        assertEquals("text/html", fields.getValue(HttpHeader.CONTENT_TYPE));
+        assertEquals("ixk.me", fields.get(HttpHeader.HOST).getValue());
+        assertFalse(fields.containsKey(HttpHeader.COOKIE));
+        fields.remove("x-custom");
+        // 删除后字段前移，序号索引同时更新
+        assertEquals("ixk.me", fields.getValue(HttpHeader.HOST));
+        fields.remove("Content-Type");
+        assertNull(fields.get(HttpHeader.CONTENT_TYPE));
+        assertEquals("ixk.me", fields.getValue(HttpHeader.HOST));
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ReadListener;
+import me.ixk.xkserver.conntecor.Acceptor;
+import me.ixk.xkserver.conntecor.Connector;
+import me.ixk.xkserver.conntecor.PollerManager;
+import me.ixk.xkserver.conntecor.Server;
+import me.ixk.xkserver.io.ByteBufferStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/17 上午 10:05
+ */
+class HttpInputTest {
+
+    @Test
+    void backPressure() throws IOException {
+        final HttpInput input = new HttpInput(8);
+        final AtomicInteger demand = new AtomicInteger();
+        input.setDemandCallback(demand::incrementAndGet);
+        assertTrue(
+            input.writeBuffer(ByteBufferStream.wrap("Hello".getBytes()))
+        );
+        assertFalse(
+            input.writeBuffer(ByteBufferStream.wrap(" World".getBytes()))
+        );
+        assertTrue(input.isPaused());
+        final byte[] bytes = new byte[5];
+        assertEquals(5, input.read(bytes));
+        assertEquals("Hello", new String(bytes));
+        assertEquals(1, demand.get());
+        assertFalse(input.isPaused());
+        assertFalse(input.isFinished());
+        input.eof();
+        assertEquals(" World", new String(input.readAllBytes()));
+        assertTrue(input.isFinished());
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    void blockingRead() throws Exception {
+        final HttpInput input = new HttpInput();
+        final Thread writer = new Thread(
+            () -> {
+                input.writeBuffer(ByteBufferStream.wrap("Hello".getBytes()));
+                input.eof();
+            }
+        );
+        writer.start();
+        assertEquals("Hello", new String(input.readAllBytes()));
+        writer.join();
+    }
+
+    @Test
+    void readListener() {
+        final HttpInput input = new HttpInput();
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final AtomicInteger allDataRead = new AtomicInteger();
+        input.setReadListener(
+            new ReadListener() {
+
+                @Override
+                public void onDataAvailable() throws IOException {
+                    while (input.isReady() && !input.isFinished()) {
+                        os.write(input.read());
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allDataRead.incrementAndGet();
+                }
+
+                @Override
+                public void onError(final Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            }
+        );
+        assertFalse(input.isReady());
+        input.writeBuffer(ByteBufferStream.wrap("Hello".getBytes()));
+        assertEquals("Hello", os.toString());
+        assertEquals(0, allDataRead.get());
+        input.eof();
+        assertEquals(1, allDataRead.get());
+        assertTrue(input.isFinished());
+    }
+
+    @Test
+    void streamThroughChannel() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(
+                "Hello World",
+                this.stream(
+                        executor,
+                        "Content-Length: 11\r\n",
+                        "Hello",
+                        " World"
+                    )
+            );
+            assertEquals(
+                "Hello World",
+                this.stream(
+                        executor,
+                        "Transfer-Encoding: chunked\r\n",
+                        "5\r\nHello\r\n",
+                        "6\r\n World\r\n0\r\n\r\n"
+                    )
+            );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void streamTrailer() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CompletableFuture<String> result = new CompletableFuture<>();
+            final HttpChannel[] holder = new HttpChannel[1];
+            final HttpChannel channel = newChannel(
+                request -> {
+                    try {
+                        final byte[] body = request
+                            .getInputStream()
+                            .readAllBytes();
+                        // 尾字段在 EOF 后发布，不会写入头字段
+                        result.complete(
+                            new String(body, StandardCharsets.ISO_8859_1) +
+                            "|" +
+                            holder[0].getHttpTrailers().getValue("Expires") +
+                            "|" +
+                            request.getHeader("Expires")
+                        );
+                    } catch (final IOException | RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                },
+                executor
+            );
+            holder[0] = channel;
+            final HttpParser parser = channel.getHttpParser();
+            parser.parse(
+                ByteBufferStream.wrap(
+                    (
+                        "POST /upload HTTP/1.1\r\nHost: ixk.me\r\n" +
+                        "Transfer-Encoding: chunked\r\n" +
+                        "Trailer: Expires\r\n\r\n" +
+                        "5\r\nHello\r\n0\r\n"
+                    ).getBytes(StandardCharsets.ISO_8859_1)
+                )
+            );
+            assertFalse(channel.getHttpInput().isFinished());
+            parser.parse(
+                ByteBufferStream.wrap(
+                    "Expires: 0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1)
+                )
+            );
+            assertEquals("Hello|0|null", result.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 请求头解析完成后处理器即开始读取，不调用 HttpParser.end，读取需要在内容解析完成时结束
+     */
+    private String stream(
+        final Executor executor,
+        final String header,
+        final String... contents
+    )
+        throws Exception {
+        final CompletableFuture<String> body = new CompletableFuture<>();
+        final HttpChannel channel = newChannel(
+            request -> {
+                try {
+                    body.complete(
+                        new String(
+                            request.getInputStream().readAllBytes(),
+                            StandardCharsets.ISO_8859_1
+                        )
+                    );
+                } catch (final IOException | RuntimeException e) {
+                    body.completeExceptionally(e);
+                }
+            },
+            executor
+        );
+        final HttpParser parser = channel.getHttpParser();
+        parser.parse(
+            ByteBufferStream.wrap(
+                (
+                    "POST /upload HTTP/1.1\r\nHost: ixk.me\r\n" +
+                    header +
+                    "\r\n"
+                ).getBytes(StandardCharsets.ISO_8859_1)
+            )
+        );
+        for (final String content : contents) {
+            parser.parse(
+                ByteBufferStream.wrap(
+                    content.getBytes(StandardCharsets.ISO_8859_1)
+                )
+            );
+        }
+        final String result = body.get(5, TimeUnit.SECONDS);
+        assertTrue(channel.getHttpInput().isFinished());
+        return result;
+    }
+
+    private static HttpChannel newChannel(
+        final HttpHandler handler,
+        final Executor executor
+    ) {
+        final SelectionKey key;
+        try {
+            final SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            final Selector selector = Selector.open();
+            key = channel.register(selector, 0);
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new HttpChannel(
+            new Connector() {
+                @Override
+                public Server getServer() {
+                    return null;
+                }
+
+                @Override
+                public Executor getExecutor() {
+                    return executor;
+                }
+
+                @Override
+                public PollerManager getPollerManager() {
+                    return null;
+                }
+
+                @Override
+                public Acceptor getAcceptor() {
+                    return null;
+                }
+
+                @Override
+                public HttpHandler getHandler() {
+                    return handler;
+                }
+
+                @Override
+                public int getMaxContentBufferSize() {
+                    return 1024;
+                }
+            },
+            null,
+            key
+        );
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.WriteListener;
+import me.ixk.xkserver.conntecor.Acceptor;
+import me.ixk.xkserver.conntecor.Connector;
+import me.ixk.xkserver.conntecor.PollerManager;
+import me.ixk.xkserver.conntecor.Server;
+import me.ixk.xkserver.io.ByteBufferPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/17 下午 3:20
+ */
+class HttpOutputTest {
+    private static final ByteBufferPool POOL = new ByteBufferPool();
+
+    @Test
+    void writeListener() throws IOException {
+        final Pipe pipe = Pipe.open();
+        pipe.sink().configureBlocking(false);
+        pipe.source().configureBlocking(false);
+        final AtomicInteger interest = new AtomicInteger();
+        final AtomicInteger possible = new AtomicInteger();
+        final HttpOutput output = new HttpOutput(
+            pipe.sink(),
+            interest::incrementAndGet,
+            new ByteBufferPool()
+        );
+        output.setWriteListener(
+            new WriteListener() {
+
+                @Override
+                public void onWritePossible() {
+                    possible.incrementAndGet();
+                }
+
+                @Override
+                public void onError(final Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            }
+        );
+        assertEquals(1, possible.get());
+        assertTrue(output.isReady());
+        // 写满管道，剩余的内容缓冲在 HttpOutput 中
+        final byte[] bytes = new byte[1024 * 1024];
+        output.write(bytes);
+        assertFalse(output.isReady());
+        assertEquals(1, interest.get());
+        assertThrows(IllegalStateException.class, () -> output.write(1));
+        final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long total = 0;
+        while (total < bytes.length) {
+            buffer.clear();
+            final int length = pipe.source().read(buffer);
+            if (length == 0) {
+                output.writable();
+                continue;
+            }
+            total += length;
+        }
+        output.writable();
+        assertEquals(bytes.length, total);
+        assertTrue(output.isReady());
+        assertEquals(2, possible.get());
+        output.close();
+        pipe.sink().close();
+        pipe.source().close();
+    }
+
+    @Test
+    void channelWritable() throws IOException {
+        try (
+            final ServerSocketChannel server = ServerSocketChannel.open();
+            final Selector selector = Selector.open()
+        ) {
+            server.bind(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)
+            );
+            try (
+                final SocketChannel client = SocketChannel.open(
+                    server.getLocalAddress()
+                );
+                final SocketChannel ignored = server.accept()
+            ) {
+                client.configureBlocking(false);
+                final SelectionKey key = client.register(
+                    selector,
+                    SelectionKey.OP_WRITE
+                );
+                final HttpChannel channel = new HttpChannel(
+                    newConnector(),
+                    null,
+                    key
+                ) {
+
+                    @Override
+                    public ByteBufferPool bufferPool() {
+                        // 不污染默认的对象池
+                        return POOL;
+                    }
+                };
+                // Poller 通过 SelectionKey 的附件分派 OP_WRITE
+                assertSame(channel, key.attachment());
+                selector.select(1000);
+                assertTrue(key.isWritable());
+                assertNotNull(channel.selected(key, client));
+                // 没有 Poller 时写满 Socket 缓冲区直接失败，不会一直阻塞
+                final byte[] bytes = new byte[32 * 1024 * 1024];
+                assertTimeoutPreemptively(
+                    Duration.ofSeconds(5),
+                    () ->
+                        assertThrows(
+                            IOException.class,
+                            () -> channel.getHttpOutput().write(bytes)
+                        )
+                );
+            }
+        }
+    }
+
+    private static Connector newConnector() {
+        return new Connector() {
+            @Override
+            public Server getServer() {
+                return null;
+            }
+
+            @Override
+            public Executor getExecutor() {
+                return null;
+            }
+
+            @Override
+            public PollerManager getPollerManager() {
+                return null;
+            }
+
+            @Override
+            public Acceptor getAcceptor() {
+                return null;
+            }
+        };
+    }
+}
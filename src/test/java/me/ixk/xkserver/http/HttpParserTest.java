@@ -6,18 +6,23 @@
 package me.ixk.xkserver.http;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import cn.hutool.core.io.IoUtil;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import javax.servlet.ReadListener;
 import me.ixk.xkserver.http.HttpParser.RequestHandler;
 import me.ixk.xkserver.io.ByteBufferPool;
 import me.ixk.xkserver.io.ByteBufferStream;
@@ -79,6 +84,52 @@ class HttpParserTest {
         this.assertContent(h2, ByteBufferStream.wrap(new byte[0]));
     }
 
+    @Test
+    void streamFixedContent() throws IOException {
+        final RequestHandlerImpl handler = new RequestHandlerImpl(1024);
+        final HttpParser parser = new HttpParser(handler);
+        final HttpInput input = handler.getHttpInput();
+        parser.parse(
+            this.wrap("POST /url HTTP/1.1\r\nContent-Length: 3\r\n\r\nab")
+        );
+        assertFalse(input.isFinished());
+        // 最后一个字节到达时内容立即结束，不需要调用 end
+        parser.parse(this.wrap("c"));
+        final byte[] bytes = new byte[3];
+        assertEquals(3, input.read(bytes, 0, 3));
+        assertEquals("abc", new String(bytes, StandardCharsets.ISO_8859_1));
+        assertTrue(input.isFinished());
+        final AtomicBoolean allDataRead = new AtomicBoolean(false);
+        input.setReadListener(
+            new ReadListener() {
+
+                @Override
+                public void onDataAvailable() {}
+
+                @Override
+                public void onAllDataRead() {
+                    allDataRead.set(true);
+                }
+
+                @Override
+                public void onError(final Throwable t) {
+                    fail(t);
+                }
+            }
+        );
+        assertTrue(allDataRead.get());
+
+        // 没有内容的请求在头字段结束时即结束
+        final RequestHandlerImpl empty = new RequestHandlerImpl(1024);
+        new HttpParser(empty)
+        .parse(this.wrap("GET /url HTTP/1.1\r\nHost: ixk.me\r\n\r\n"));
+        assertTrue(empty.getHttpInput().isFinished());
+        final RequestHandlerImpl zero = new RequestHandlerImpl(1024);
+        new HttpParser(zero)
+        .parse(this.link(this.startLine(), this.emptyContentHeaders()));
+        assertTrue(zero.getHttpInput().isFinished());
+    }
+
     @Test
     void parseChunkContent() {
         final RequestHandlerImpl handler = new RequestHandlerImpl();
@@ -259,6 +310,257 @@ class HttpParserTest {
         assertTrue(handler.getHttpFields().containsKey("Expires"));
     }
 
+    @Test
+    void parseBareLf() {
+        final RequestHandlerImpl handler = new RequestHandlerImpl();
+        final HttpParser parser = new HttpParser(handler);
+        parser.parse(
+            this.wrap(
+                    "GET  /url  HTTP/1.1\n" +
+                    "Host: ixk.me\n" +
+                    "Accept: text/html\n" +
+                    "Accept-Encoding:\tgzip, deflate, br\n" +
+                    "X-Empty\n" +
+                    "\n"
+                )
+        );
+        parser.end();
+        this.assertStartLine(handler);
+        this.assertHeaders(handler);
+        assertEquals(
+            "",
+            handler.getHttpFields().get("X-Empty").getValues().get(0)
+        );
+    }
+
+    @Test
+    void parseDirectBuffer() {
+        final RequestHandlerImpl handler = new RequestHandlerImpl();
+        final HttpParser parser = new HttpParser(handler);
+        parser.parse(this.direct("GET /url HTTP/1.1\r\nHost: ixk.me\r\n\r\n"));
+        parser.end();
+        this.assertStartLine(handler);
+        assertEquals("ixk.me", handler.getHttpFields().getValue("Host"));
+    }
+
+    @Test
+    void splitStartLine() {
+        final RequestHandlerImpl handler = new RequestHandlerImpl();
+        final HttpParser parser = new HttpParser(handler);
+        parser.parse(this.wrap("POST /u"));
+        assertEquals(HttpMethod.POST, handler.getHttpMethod());
+        parser.parse(this.wrap("rl HTTP/1.0"));
+        parser.parse(this.wrap("\r\nHost: ixk.me\r\n\r\n"));
+        parser.end();
+        assertEquals("/url", handler.getHttpUri().asString());
+        assertEquals(HttpVersion.HTTP_1_0, handler.getHttpVersion());
+
+        // 不能按字节识别的方法和版本仍然逐字节解析
+        final RequestHandlerImpl fallback = new RequestHandlerImpl();
+        final HttpParser fallbackParser = new HttpParser(fallback);
+        fallbackParser.parse(this.wrap("GE"));
+        fallbackParser.parse(this.wrap("T /url HTTP/0.9\r\n\r\n"));
+        fallbackParser.end();
+        assertEquals(HttpMethod.GET, fallback.getHttpMethod());
+        assertEquals(HttpVersion.HTTP_0_9, fallback.getHttpVersion());
+        assertThrows(
+            BadMessageException.class,
+            () ->
+                new HttpParser(new RequestHandlerImpl())
+                .parse(this.wrap("PATCH /url HTTP/1.1\r\n\r\n"))
+        );
+    }
+
+    @Test
+    void parseCachedHeaders() {
+        final RequestHandlerImpl handler = new RequestHandlerImpl();
+        final HttpParser parser = new HttpParser(handler);
+        parser.parse(
+            this.wrap(
+                    "GET /url HTTP/1.1\r\n" +
+                    "Accept-Encoding: gzip\r\n" +
+                    "accept-encoding: gzip\r\n" +
+                    "Connection: keep-alive\r\n" +
+                    "\r\n"
+                )
+        );
+        parser.end();
+        final HttpField cached = HttpFieldCache.get("Accept-Encoding: gzip");
+        final HttpField field = handler.getHttpFields().get("Accept-Encoding");
+        assertEquals(List.of("gzip", "gzip"), field.getValues());
+        assertEquals(1, cached.size());
+        assertEquals(
+            HttpHeader.CONNECTION,
+            handler.getHttpFields().get("Connection").getHeader()
+        );
+    }
+
+    @Test
+    void lazyHeaderValue() {
+        final RequestHandlerImpl handler = new RequestHandlerImpl();
+        final HttpParser parser = new HttpParser(handler);
+        final ByteBufferStream buffer =
+            this.link(this.startLine(), this.fixedContentHeaders());
+        parser.parse(buffer);
+        parser.end();
+        final HttpField host = handler.getHttpFields().get("Host");
+        assertFalse(host.isDecoded());
+        assertEquals(1, host.size());
+        assertTrue(buffer.isRetained());
+        assertEquals("ixk.me", host.getValue());
+        assertTrue(host.isDecoded());
+        final HttpField accept = handler.getHttpFields().get("Accept");
+        assertFalse(accept.isDecoded());
+        parser.release();
+        assertFalse(buffer.isRetained());
+        // 释放后 Buffer 可能被复用，未访问过的值在释放时已经解码或复制
+        Arrays.fill(buffer.array(), (byte) 'x');
+        assertEquals("text/html", accept.getValue());
+        assertEquals("/url", handler.getHttpUri().getPath());
+    }
+
+    @Test
+    void lengthLimit() {
+        final BadMessageException uri = assertThrows(
+            BadMessageException.class,
+            () ->
+                new HttpParser(new RequestHandlerImpl(), 16, 64, 128)
+                .parse(this.wrap("GET /very-long-url HTTP/1.1\r\n"))
+        );
+        assertEquals(HttpStatus.URI_TOO_LONG.getValue(), uri.getStatus());
+        final BadMessageException header = assertThrows(
+            BadMessageException.class,
+            () ->
+                new HttpParser(new RequestHandlerImpl(), 64, 20, 128)
+                .parse(this.link(this.startLine(), this.fixedContentHeaders()))
+        );
+        assertEquals(
+            HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE.getValue(),
+            header.getStatus()
+        );
+        final BadMessageException headers = assertThrows(
+            BadMessageException.class,
+            () ->
+                new HttpParser(new RequestHandlerImpl(), 64, 64, 64)
+                .parse(this.link(this.startLine(), this.fixedContentHeaders()))
+        );
+        assertEquals(
+            HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE.getValue(),
+            headers.getStatus()
+        );
+    }
+
+    @Test
+    void illegalHeaderWithinLimit() {
+        // 快速路径放弃的行不计入长度，由慢速路径报告非法字符
+        final BadMessageException e = assertThrows(
+            BadMessageException.class,
+            () ->
+                new HttpParser(new RequestHandlerImpl(), 64, 32, 128)
+                .parse(
+                        this.wrap(
+                                "GET / HTTP/1.1\r\nHost: ixk.me\r\n" +
+                                "Bad-Header-Name x: y\r\n\r\n"
+                            )
+                    )
+        );
+        assertEquals(HttpStatus.BAD_REQUEST.getValue(), e.getStatus());
+    }
+
+    @Test
+    void caseSensitiveVersion() {
+        final BadMessageException e = assertThrows(
+            BadMessageException.class,
+            () ->
+                new HttpParser(new RequestHandlerImpl())
+                .parse(this.wrap("GET / http/1.1\r\nHost: ixk.me\r\n\r\n"))
+        );
+        assertEquals(
+            HttpStatus.HTTP_VERSION_NOT_SUPPORTED.getValue(),
+            e.getStatus()
+        );
+        final BadMessageException direct = assertThrows(
+            BadMessageException.class,
+            () ->
+                new HttpParser(new RequestHandlerImpl())
+                .parse(this.direct("GET / http/1.1\r\nHost: ixk.me\r\n\r\n"))
+        );
+        assertEquals(
+            HttpStatus.HTTP_VERSION_NOT_SUPPORTED.getValue(),
+            direct.getStatus()
+        );
+        assertEquals(
+            HttpVersion.HTTP_1_1,
+            HttpVersion.bytesToVersion(this.direct("HTTP/1.1\r\n").getBuffer())
+        );
+        assertNull(
+            HttpVersion.bytesToVersion(this.direct("http/1.1\r\n").getBuffer())
+        );
+    }
+
+    @Test
+    void chunkExtension() {
+        final RequestHandlerImpl handler = new RequestHandlerImpl();
+        final HttpParser parser = new HttpParser(handler);
+        parser.parse(this.startLine());
+        parser.parse(this.chunkContentHeaders());
+        parser.parse(this.wrap("7;name=value\r\nMozilla\r\n"));
+        parser.parse(this.wrap("9 ; a=\"b;c\"\r\nDeveloper\r\n"));
+        parser.parse(this.wrap("7\r\nNetwork\r\n0;last\r\n\r\n"));
+        parser.end();
+        this.assertContent(handler, this.wrap("MozillaDeveloperNetwork"));
+        assertThrows(
+            BadMessageException.class,
+            () ->
+                new HttpParser(new RequestHandlerImpl())
+                .parse(
+                    this.link(
+                            this.startLine(),
+                            this.chunkContentHeaders(),
+                            this.wrap("10000000000000000\r\n")
+                        )
+                )
+        );
+    }
+
+    @Test
+    void splitChunkSize() {
+        final RequestHandlerImpl handler = new RequestHandlerImpl();
+        final HttpParser parser = new HttpParser(handler);
+        parser.parse(this.startLine());
+        parser.parse(this.chunkContentHeaders());
+        parser.parse(this.wrap("1"));
+        parser.parse(this.wrap("7\r"));
+        parser.parse(this.wrap("\nMozillaDeveloperNetwork\r\n0\r\n\r"));
+        parser.parse(this.wrap("\n"));
+        parser.end();
+        this.assertContent(handler, this.wrap("MozillaDeveloperNetwork"));
+    }
+
+    @Test
+    void largeContentLength() {
+        final RequestHandlerImpl handler = new RequestHandlerImpl();
+        final HttpParser parser = new HttpParser(handler);
+        parser.parse(this.startLine());
+        parser.parse(this.wrap("Content-Length: 5000000000\r\n\r\n"));
+        parser.parse(this.wrap("Hello"));
+        assertEquals(
+            "5000000000",
+            handler.getHttpField("Content-Length").getValue()
+        );
+        assertThrows(
+            BadMessageException.class,
+            () ->
+                new HttpParser(new RequestHandlerImpl())
+                .parse(
+                    this.link(
+                            this.startLine(),
+                            this.wrap("Content-Length: +5\r\n\r\n")
+                        )
+                )
+        );
+    }
+
     private void assertStartLine(final RequestHandlerImpl handler) {
         assertEquals(HttpMethod.GET, handler.getHttpMethod());
         assertEquals("/url", handler.getHttpUri().asString());
@@ -375,6 +677,13 @@ class HttpParserTest {
         );
     }
 
+    private ByteBufferStream direct(final String string) {
+        final byte[] bytes = string.getBytes(StandardCharsets.ISO_8859_1);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return new ByteBufferStream(buffer);
+    }
+
     private ByteBufferStream link(final ByteBufferStream... buffers) {
         return this.wrap(
                 Arrays
@@ -402,7 +711,15 @@ class HttpParserTest {
         private HttpUri httpUri;
         private HttpVersion httpVersion;
         private final HttpFields httpFields = new HttpFields();
-        private final HttpInput httpInput = new HttpInput();
+        private final HttpInput httpInput;
+
+        private RequestHandlerImpl() {
+            this(-1);
+        }
+
+        private RequestHandlerImpl(final int maxContentBufferSize) {
+            this.httpInput = new HttpInput(maxContentBufferSize);
+        }
 
         @Override
         public ByteBufferPool bufferPool() {
@@ -444,6 +761,11 @@ class HttpParserTest {
             this.httpInput.writeBuffer(buffer);
         }
 
+        @Override
+        public void contentComplete() {
+            this.httpInput.eof();
+        }
+
         @Override
         public void requestComplete() {
             this.httpInput.flip();
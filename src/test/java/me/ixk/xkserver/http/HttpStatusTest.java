@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/22 下午 2:40
+ */
+class HttpStatusTest {
+
+    @Test
+    void statusLine() {
+        assertEquals(
+            "HTTP/1.1 200 OK\r\n",
+            string(HttpStatus.OK.getStatusLine(HttpVersion.HTTP_1_1))
+        );
+        assertEquals(
+            "HTTP/1.0 404 Not Found\r\n",
+            string(HttpStatus.NOT_FOUND.getStatusLine(HttpVersion.HTTP_1_0))
+        );
+        assertNull(HttpStatus.OK.getStatusLine(HttpVersion.HTTP_2));
+        assertSame(HttpStatus.NOT_FOUND, HttpStatus.resolve(404));
+        assertNull(HttpStatus.resolve(999));
+    }
+
+    @Test
+    void headerBytes() {
+        assertEquals(
+            "Content-Length: ",
+            string(HttpHeader.CONTENT_LENGTH.getBufferColonSpace())
+        );
+        assertEquals("Host", string(HttpHeader.HOST.getBuffer()));
+        assertEquals("HTTP/1.1", string(HttpVersion.HTTP_1_1.toBuffer()));
+    }
+
+    @Test
+    void readOnly() {
+        final ByteBuffer line = HttpStatus.OK.getStatusLine(
+            HttpVersion.HTTP_1_1
+        );
+        assertTrue(line.isReadOnly());
+        assertThrows(ReadOnlyBufferException.class, () -> line.put((byte) 0));
+        // 读取不影响之后获取的 Buffer
+        line.position(line.limit());
+        assertEquals(
+            "HTTP/1.1 200 OK\r\n",
+            string(HttpStatus.OK.getStatusLine(HttpVersion.HTTP_1_1))
+        );
+    }
+
+    private static String string(final ByteBuffer buffer) {
+        return StandardCharsets.ISO_8859_1.decode(buffer).toString();
+    }
+}
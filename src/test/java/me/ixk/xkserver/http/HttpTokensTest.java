@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/21 下午 3:30
+ */
+class HttpTokensTest {
+
+    @Test
+    void indexOf() {
+        final byte[] bytes = "Host: ixk.me\r\nAccept: */*\r\n".getBytes(
+                StandardCharsets.ISO_8859_1
+            );
+        assertEquals(13, HttpTokens.indexOfLf(bytes, 0, bytes.length));
+        assertEquals(26, HttpTokens.indexOfLf(bytes, 14, bytes.length));
+        assertEquals(-1, HttpTokens.indexOfLf(bytes, 0, 13));
+        // 与逐字节查找的结果一致
+        final Random random = new Random(47);
+        final byte[] data = new byte[64];
+        for (int n = 0; n < 1000; n++) {
+            random.nextBytes(data);
+            final int start = random.nextInt(16);
+            final int limit = start + random.nextInt(data.length - start);
+            final byte b = data[random.nextInt(data.length)];
+            int expected = -1;
+            for (int i = start; i < limit; i++) {
+                if (data[i] == b) {
+                    expected = i;
+                    break;
+                }
+            }
+            assertEquals(expected, HttpTokens.indexOf(data, start, limit, b));
+        }
+    }
+
+    @Test
+    void scanValue() {
+        final byte[] bytes = "text/html;\tcharset=UTF-8 é\u007f".getBytes(
+                StandardCharsets.ISO_8859_1
+            );
+        assertEquals(
+            bytes.length - 1,
+            HttpTokens.scanValue(bytes, 0, bytes.length)
+        );
+        assertEquals(
+            bytes.length - 1,
+            HttpTokens.scanValue(bytes, 0, bytes.length - 1)
+        );
+        final Random random = new Random(47);
+        final byte[] data = new byte[40];
+        for (int n = 0; n < 1000; n++) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) (0x20 + random.nextInt(0x5f));
+            }
+            final int bad = random.nextInt(data.length + 1);
+            if (bad < data.length) {
+                data[bad] = (byte) (random.nextBoolean() ? 0x7f : 0x01);
+            }
+            assertEquals(bad, HttpTokens.scanValue(data, 0, data.length));
+        }
+    }
+
+    @Test
+    void scan() {
+        final byte[] bytes = "Content-Type: text".getBytes(
+                StandardCharsets.ISO_8859_1
+            );
+        assertEquals(
+            12,
+            HttpTokens.scan(bytes, 0, bytes.length, HttpTokens.TOKEN_CHAR)
+        );
+        assertEquals(
+            13,
+            HttpTokens.scan(bytes, 0, bytes.length, HttpTokens.URI_CHAR)
+        );
+    }
+}
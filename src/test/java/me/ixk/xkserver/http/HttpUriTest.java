@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/20 上午 11:05
+ */
+class HttpUriTest {
+
+    @Test
+    void parseBytes() {
+        final String target = "http://user:pw@ixk.me:8080/a/b;p=1?x=1#top";
+        final byte[] bytes = ("GET " + target + " HTTP/1.1").getBytes(
+                StandardCharsets.ISO_8859_1
+            );
+        final HttpUri uri = new HttpUri(bytes, 4, target.length());
+        assertEquals("http", uri.getScheme());
+        assertEquals("user:pw", uri.getUser());
+        assertEquals("ixk.me", uri.getHost());
+        assertEquals(8080, uri.getPort());
+        assertEquals("/a/b;p=1", uri.getPath());
+        assertEquals("p=1", uri.getParam());
+        assertEquals("/a/b", uri.getDecodedPath());
+        assertEquals("x=1", uri.getQuery());
+        assertEquals("top", uri.getFragment());
+        assertEquals(target, uri.asString());
+    }
+
+    @Test
+    void originForm() {
+        final HttpUri uri = new HttpUri("/welcome?name=syfxlin");
+        assertFalse(uri.isAbsolute());
+        assertFalse(uri.hasAuthority());
+        assertEquals("/welcome", uri.getPath());
+        assertEquals("/welcome", uri.getDecodedPath());
+        assertNull(uri.getFragment());
+        uri.setScheme("http");
+        uri.setAuthority("localhost:8080", 80);
+        assertTrue(uri.hasAuthority());
+        assertEquals("localhost", uri.getHost());
+        assertEquals(8080, uri.getPort());
+        assertEquals(
+            "http://localhost:8080/welcome?name=syfxlin",
+            uri.asString()
+        );
+    }
+
+    @Test
+    void authority() {
+        final HttpUri uri = new HttpUri("/");
+        uri.setAuthority("[::1]:8443", 80);
+        assertEquals("[::1]", uri.getHost());
+        assertEquals(8443, uri.getPort());
+        uri.setAuthority("ixk.me", 80);
+        assertEquals("ixk.me", uri.getHost());
+        assertEquals(80, uri.getPort());
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> uri.setAuthority("ixk.me:http", 80)
+        );
+    }
+}
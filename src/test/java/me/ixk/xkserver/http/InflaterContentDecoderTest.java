@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import me.ixk.xkserver.io.ByteBufferPool;
+import me.ixk.xkserver.io.ByteBufferStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/18 下午 2:15
+ */
+class InflaterContentDecoderTest {
+
+    @Test
+    void gzip() throws IOException {
+        final byte[] content = this.content();
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final GZIPOutputStream os = new GZIPOutputStream(compressed)) {
+            os.write(content);
+        }
+        final InflaterContentDecoder decoder = InflaterContentDecoder.gzip(
+            -1,
+            new ByteBufferPool()
+        );
+        // 逐字节传入，头部、数据和尾部都会被分割
+        assertEquals(
+            new String(content),
+            this.decode(decoder, compressed.toByteArray(), 1)
+        );
+        decoder.complete();
+        decoder.close();
+    }
+
+    @Test
+    void deflate() throws IOException {
+        final byte[] content = this.content();
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (
+            final DeflaterOutputStream os = new DeflaterOutputStream(compressed)
+        ) {
+            os.write(content);
+        }
+        final InflaterContentDecoder decoder = InflaterContentDecoder.deflate(
+            -1,
+            new ByteBufferPool()
+        );
+        assertEquals(
+            new String(content),
+            this.decode(decoder, compressed.toByteArray(), 100)
+        );
+        decoder.complete();
+        decoder.close();
+    }
+
+    @Test
+    void limit() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final GZIPOutputStream os = new GZIPOutputStream(compressed)) {
+            os.write(new byte[1024 * 1024]);
+        }
+        final InflaterContentDecoder decoder = InflaterContentDecoder.gzip(
+            64 * 1024,
+            new ByteBufferPool()
+        );
+        final BadMessageException e = assertThrows(
+            BadMessageException.class,
+            () -> this.decode(decoder, compressed.toByteArray(), 1024)
+        );
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.getValue(), e.getStatus());
+        decoder.close();
+    }
+
+    @Test
+    void incomplete() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final GZIPOutputStream os = new GZIPOutputStream(compressed)) {
+            os.write(this.content());
+        }
+        final byte[] bytes = compressed.toByteArray();
+        final InflaterContentDecoder decoder = InflaterContentDecoder.gzip(
+            -1,
+            new ByteBufferPool()
+        );
+        decoder.decode(
+            ByteBufferStream.wrap(bytes, 0, bytes.length - 4),
+            ByteBufferStream::close
+        );
+        assertThrows(BadMessageException.class, decoder::complete);
+        decoder.close();
+    }
+
+    private String decode(
+        final ContentDecoder decoder,
+        final byte[] bytes,
+        final int step
+    ) {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        for (int i = 0; i < bytes.length; i += step) {
+            decoder.decode(
+                ByteBufferStream.wrap(
+                    bytes,
+                    i,
+                    Math.min(step, bytes.length - i)
+                ),
+                buffer -> {
+                    final byte[] out = new byte[buffer.remaining()];
+                    buffer.read(out);
+                    os.write(out, 0, out.length);
+                    buffer.close();
+                }
+            );
+        }
+        return os.toString();
+    }
+
+    private byte[] content() {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            builder.append("Hello World ").append(i).append('\n');
+        }
+        return builder.toString().getBytes();
+    }
+}
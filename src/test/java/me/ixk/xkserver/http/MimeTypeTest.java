@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/22 上午 10:15
+ */
+class MimeTypeTest {
+
+    @Test
+    void from() {
+        assertSame(MimeType.TEXT_HTML, MimeType.from("TEXT/HTML"));
+        assertSame(
+            MimeType.TEXT_HTML_UTF_8,
+            MimeType.from("text/html; charset=UTF-8")
+        );
+        assertNull(MimeType.from("text/unknown"));
+    }
+
+    @Test
+    void forFileName() {
+        assertSame(MimeType.TEXT_CSS, MimeType.forFileName("/static/app.CSS"));
+        assertSame(MimeType.IMAGE_JPEG, MimeType.forFileName("a.b/c.jpeg"));
+        assertSame(MimeType.APPLICATION_JSON, MimeType.forExtension("json"));
+        assertNull(MimeType.forFileName("/static.d/README"));
+        assertNull(MimeType.forFileName("archive.unknown"));
+    }
+
+    @Test
+    void sniff() {
+        final byte[] png = {
+            (byte) 0x89,
+            'P',
+            'N',
+            'G',
+            '\r',
+            '\n',
+            0x1a,
+            '\n',
+            0,
+        };
+        assertSame(MimeType.IMAGE_PNG, MimeType.sniff(png, 0, png.length));
+        final byte[] pdf = "%PDF-1.7".getBytes(StandardCharsets.ISO_8859_1);
+        assertSame(MimeType.APPLICATION_PDF, MimeType.sniff(pdf, 0, 8));
+        assertNull(MimeType.sniff(pdf, 0, 3));
+    }
+
+    @Test
+    void contentTypeField() {
+        assertEquals(
+            "Content-Type: text/css;charset=utf-8\r\n",
+            StandardCharsets.ISO_8859_1
+                .decode(MimeType.TEXT_CSS.getContentTypeField())
+                .toString()
+        );
+        assertTrue(MimeType.TEXT_CSS.getContentTypeField().isReadOnly());
+        assertEquals("image/png", MimeType.IMAGE_PNG.getContentType());
+        assertEquals(
+            "text/html;charset=iso-8859-1",
+            MimeType.TEXT_HTML_8859_1.getContentType()
+        );
+    }
+}
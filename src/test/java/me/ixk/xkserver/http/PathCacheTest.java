@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/20 下午 3:40
+ */
+class PathCacheTest {
+
+    @Test
+    void decodePath() {
+        assertEquals("/", PathCache.decodePath("/"));
+        assertEquals("/a b/c", PathCache.decodePath("/a%20b/c"));
+        assertEquals("/中文", PathCache.decodePath("/%E4%B8%AD%E6%96%87"));
+        assertEquals("/a/c", PathCache.decodePath("/a/./b/../c"));
+        assertEquals("/a/", PathCache.decodePath("/a/b/.."));
+        assertEquals("/a/b", PathCache.decodePath("/a;x=1/b;y;z"));
+        assertEquals("/b", PathCache.decodePath("/a/%2e%2e/b"));
+        assertNull(PathCache.decodePath("/../etc/passwd"));
+        assertNull(PathCache.decodePath("/a%2"));
+        assertNull(PathCache.decodePath("/a%zz"));
+        // 编码的 /、\ 和 NUL 不能绕过 .. 的处理
+        assertNull(PathCache.decodePath("/a/..%2F..%2Fetc"));
+        assertNull(PathCache.decodePath("/a/..%5C..%5Cetc"));
+        assertNull(PathCache.decodePath("/a%00.txt"));
+        assertNull(new PathCache(4, 64).get("/a/..%2f..%2fetc"));
+    }
+
+    @Test
+    void cached() {
+        final PathCache cache = new PathCache(4, 64);
+        final String first = cache.get("/api/%75sers");
+        assertEquals("/api/users", first);
+        assertSame(first, cache.get("/api/%75sers"));
+        // 超过长度上限时不缓存
+        final PathCache small = new PathCache(4, 4);
+        assertEquals("/a b", small.get("/a%20b"));
+    }
+
+    @Test
+    void rawBytes() {
+        final PathCache cache = new PathCache(4, 64);
+        // 未编码的 UTF-8 字节原样保留
+        final byte[] bytes = { '/', (byte) 0xC3, (byte) 0xA9 };
+        assertEquals("/é", cache.get(bytes, 0, bytes.length));
+        assertEquals("/é", cache.get("/Ã©"));
+        assertEquals("/é", new PathCache(4, 2).get("/Ã©"));
+        // 已解码的字符串仍按 UTF-8 编码
+        assertEquals("/中", cache.get("/中"));
+        assertEquals("/é", PathCache.decodePath("/é"));
+    }
+
+    @Test
+    void admission() {
+        final PathCache cache = new PathCache(2, 64);
+        for (int i = 0; i < 8; i++) {
+            cache.get("/hot/%61");
+            cache.get("/hot/%62");
+        }
+        final String hot = cache.get("/hot/%61");
+        // 只访问一次的路径不会替换热点路径
+        for (int i = 0; i < 16; i++) {
+            cache.get("/cold/" + i + "%20");
+        }
+        assertSame(hot, cache.get("/hot/%61"));
+    }
+
+    @Test
+    void httpUri() {
+        assertEquals("/a/c", new HttpUri("/a/./b/../c?x=1").getDecodedPath());
+        assertEquals("/a", new HttpUri("/a;jsessionid=1").getDecodedPath());
+        assertEquals("/a", new HttpUri("/a;x;y").getDecodedPath());
+        final HttpUri uri = new HttpUri("/plain");
+        uri.setPath("/p%61th");
+        assertEquals("/path", uri.getDecodedPath());
+    }
+}
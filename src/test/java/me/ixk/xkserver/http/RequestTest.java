@@ -14,6 +14,7 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import cn.hutool.core.io.IoUtil;
 import com.fasterxml.jackson.databind.JsonNode;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.channels.SelectionKey;
@@ -26,6 +27,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 import javax.servlet.ServletException;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.Part;
@@ -324,6 +326,51 @@ class RequestTest {
         assertEquals("syfxlin", bodyRequest.getParameter("name"));
     }
 
+    @Test
+    void getGzipParameter() throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            gzip.write("age=18&name=syfxlin".getBytes());
+        }
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        os.write(
+            (
+                "POST /welcome HTTP/1.1\r\n" +
+                    "Host: localhost:8080\r\n" +
+                    "Content-Length: " + body.size() + "\r\n" +
+                    "Content-Encoding: gzip\r\n" +
+                    "Content-Type: application/x-www-form-urlencoded\r\n" +
+                    "\r\n"
+            ).getBytes(StandardCharsets.ISO_8859_1)
+        );
+        body.writeTo(os);
+        final HttpChannel channel = newChannel();
+        final HttpParser parser = new HttpParser(channel);
+        parser.parse(ByteBufferStream.wrap(os.toByteArray()));
+        parser.end();
+        final Request request = new Request(channel);
+        assertEquals("syfxlin", request.getParameter("name"));
+    }
+
+    @Test
+    void reset() {
+        final HttpChannel channel = newChannel();
+        final HttpParser parser = channel.getHttpParser();
+        parser.parse(bodyRequest());
+        parser.end();
+        final Request request = new Request(channel);
+        assertEquals("POST", request.getMethod());
+        assertEquals("syfxlin", request.getParameter("name"));
+        channel.reset();
+        parser.parse(queryRequest());
+        parser.end();
+        request.reset();
+        assertEquals("GET", request.getMethod());
+        assertEquals("/welcome", request.getRequestURI());
+        assertEquals("18", request.getParameter("age"));
+        this.assertCookies(request);
+    }
+
     @Test
     void getParameterNames() {
         assertEquals("name", queryRequest.getParameterNames().nextElement());
@@ -7,14 +7,20 @@ package me.ixk.xkserver.io;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.util.StrUtil;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -146,6 +152,67 @@ class ByteBufferStreamTest {
         assertEquals("Hello", out.toString());
     }
 
+    @Test
+    void transferTo() throws IOException {
+        final ByteBufferStream stream = ByteBufferStream.wrap(
+            ("Hello World").getBytes()
+        );
+        final InputStream is = stream.getInputStream();
+        assertEquals(6L, is.skip(6));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(5L, is.transferTo(out));
+        assertEquals("World", out.toString());
+        assertEquals(-1, is.read());
+    }
+
+    @Test
+    void map() throws IOException {
+        final Path source = Files.createTempFile("xkserver", ".txt");
+        final Path target = Files.createTempFile("xkserver", ".txt");
+        // 映射的内存由 GC 回收，部分平台在回收前无法删除文件
+        source.toFile().deleteOnExit();
+        target.toFile().deleteOnExit();
+        Files.write(source, ("Hello World").getBytes());
+        final MappedByteBufferStream stream = MappedByteBufferStream.map(
+            source
+        );
+        assertEquals('H', stream.read());
+        assertEquals(10, stream.remaining());
+        try (
+            final FileChannel channel = FileChannel.open(
+                target,
+                StandardOpenOption.WRITE
+            )
+        ) {
+            stream.writeTo(channel);
+        }
+        stream.close();
+        assertFalse(stream.getChannel().isOpen());
+        assertEquals("ello World", Files.readString(target));
+    }
+
+    @Test
+    void mapCopyOnWrite() throws IOException {
+        final Path source = Files.createTempFile("xkserver", ".txt");
+        source.toFile().deleteOnExit();
+        Files.write(source, ("Hello World").getBytes());
+        final MappedByteBufferStream stream = MappedByteBufferStream.map(
+            source
+        );
+        assertEquals('H', stream.read());
+        // 容量足够时也需要先复制，不能写入只读的映射区域
+        stream.write(("a").getBytes());
+        assertFalse(stream.getBuffer().isReadOnly());
+        stream.position(0);
+        assertEquals(
+            "Hallo World",
+            StandardCharsets.ISO_8859_1.decode(stream.getBuffer()).toString()
+        );
+        stream.close();
+        assertFalse(stream.getChannel().isOpen());
+        assertEquals("Hello World", Files.readString(source));
+    }
+
     @Test
     void close() {
         final ByteBufferStream stream = ByteBufferStream.allocate(1024);
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/13 上午 11:05
+ */
+class CompositeByteBufferStreamTest {
+
+    @Test
+    void readAndWrite() {
+        final ByteBufferPool pool = new ByteBufferPool(4);
+        final CompositeByteBufferStream stream = new CompositeByteBufferStream(
+            4,
+            pool
+        );
+        stream.write("Hello World".getBytes());
+        assertEquals(3, stream.componentCount());
+        assertEquals(11, stream.available());
+        stream.flip();
+        assertEquals('H', stream.read());
+        stream.mark();
+        final byte[] bytes = new byte[6];
+        assertEquals(6, stream.read(bytes));
+        assertArrayEquals("ello W".getBytes(), bytes);
+        stream.reset();
+        assertEquals("ello World", new String(stream.toArray()));
+        assertEquals(-1, stream.read());
+        stream.write('!');
+        assertEquals('!', stream.read());
+        stream.close();
+        assertEquals(12L, pool.getMemory(false).get());
+    }
+
+    @Test
+    void append() throws IOException {
+        final ByteBufferPool pool = new ByteBufferPool(4);
+        final CompositeByteBufferStream stream = new CompositeByteBufferStream(
+            4,
+            pool
+        );
+        stream.write("Hello".getBytes());
+        stream.append(ByteBuffer.wrap(" World".getBytes()));
+        stream.write("!".getBytes());
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        stream.writeTo(os);
+        assertEquals("Hello World!", os.toString());
+        stream.rewind();
+        final ByteBufferStream buffer = stream.readBuffer();
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.read(bytes);
+        assertEquals("Hell", new String(bytes));
+        buffer.close();
+        stream.close();
+    }
+
+    @Test
+    void duplicate() {
+        final ByteBufferPool pool = new ByteBufferPool(8);
+        final CompositeByteBufferStream stream = new CompositeByteBufferStream(
+            8,
+            pool
+        );
+        stream.write("Hello".getBytes());
+        final CompositeByteBufferStream duplicate = stream.duplicate();
+        duplicate.write(" World".getBytes());
+        stream.write("!".getBytes());
+        stream.close();
+        // 块仍然被 duplicate 引用
+        assertEquals(0L, pool.getMemory(false).get());
+        assertEquals("Hello World", new String(duplicate.toArray()));
+        duplicate.close();
+        assertEquals(16L, pool.getMemory(false).get());
+    }
+
+    @Test
+    void readLine() {
+        final CompositeByteBufferStream stream = new CompositeByteBufferStream(
+            4,
+            new ByteBufferPool(4)
+        );
+        stream.write("Hello\r\n".getBytes());
+        stream.append(ByteBuffer.wrap("World\nEnd".getBytes()));
+        final byte[] bytes = new byte[16];
+        assertEquals(7, stream.readLine(bytes, 0, bytes.length));
+        assertEquals("Hello\r\n", new String(bytes, 0, 7));
+        assertEquals(6, stream.readLine(bytes, 0, bytes.length));
+        assertEquals("World\n", new String(bytes, 0, 6));
+        assertEquals(2, stream.readLine(bytes, 0, 2));
+        assertEquals(1, stream.readLine(bytes, 0, bytes.length));
+        assertEquals(-1, stream.readLine(bytes, 0, bytes.length));
+        stream.close();
+    }
+
+    @Test
+    void writeToNonBlocking() throws IOException {
+        final CompositeByteBufferStream stream = new CompositeByteBufferStream(
+            4,
+            new ByteBufferPool(4)
+        );
+        stream.write("Hello World".getBytes());
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final int[] capacity = { 5 };
+        // 每次最多写入 capacity 个字节，写满后返回 0
+        final GatheringByteChannel channel = new GatheringByteChannel() {
+            @Override
+            public long write(
+                final ByteBuffer[] srcs,
+                final int offset,
+                final int length
+            ) {
+                long total = 0;
+                for (int i = offset; i < offset + length; i++) {
+                    while (srcs[i].hasRemaining() && capacity[0] > 0) {
+                        os.write(srcs[i].get());
+                        capacity[0]--;
+                        total++;
+                    }
+                }
+                return total;
+            }
+
+            @Override
+            public long write(final ByteBuffer[] srcs) {
+                return this.write(srcs, 0, srcs.length);
+            }
+
+            @Override
+            public int write(final ByteBuffer src) {
+                return (int) this.write(new ByteBuffer[] { src });
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {}
+        };
+        assertEquals(5L, stream.writeTo(channel));
+        assertEquals("Hello", os.toString());
+        assertEquals(6L, stream.remainingLong());
+        assertEquals(0L, stream.writeTo(channel));
+        capacity[0] = 16;
+        assertEquals(6L, stream.writeTo(channel));
+        assertEquals("Hello World", os.toString());
+        assertEquals(0L, stream.remainingLong());
+        stream.close();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2021, Otstar Lin (syfxlin@gmail.com). All Rights Reserved.
+ *
+ */
+
+package me.ixk.xkserver.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Otstar Lin
+ * @date 2021/1/12 下午 4:40
+ */
+class RetainableByteBufferTest {
+
+    @Test
+    void retainAndRelease() {
+        final ByteBufferPool pool = new ByteBufferPool();
+        final RetainableByteBuffer buffer = pool.acquireRetainable(1024);
+        buffer.retain();
+        assertTrue(buffer.isRetained());
+        assertFalse(buffer.release());
+        assertEquals(0L, pool.getMemory(false).get());
+        assertTrue(buffer.release());
+        assertEquals(1024L, pool.getMemory(false).get());
+        assertThrows(IllegalStateException.class, buffer::retain);
+        assertThrows(IllegalStateException.class, buffer::release);
+    }
+
+    @Test
+    void duplicate() {
+        final ByteBufferPool pool = new ByteBufferPool();
+        final ByteBufferStream stream = new ByteBufferStream(1024, pool);
+        stream.write(("Hello").getBytes());
+        stream.flip();
+        final ByteBufferStream duplicate = stream.duplicate();
+        stream.close();
+        // 仍然存在引用，不能归还到对象池
+        assertEquals(0L, pool.getMemory(false).get());
+        assertEquals('H', duplicate.read());
+        duplicate.close();
+        assertEquals(1024L, pool.getMemory(false).get());
+    }
+
+    @Test
+    void grow() {
+        final ByteBufferPool pool = new ByteBufferPool();
+        final ByteBufferStream stream = new ByteBufferStream(1024, pool);
+        stream.write(("Hello").getBytes());
+        final ByteBufferStream slice = stream.duplicate();
+        stream.write(new byte[2048]);
+        // 扩容后旧的 Buffer 仍然被 slice 引用
+        assertEquals(0L, pool.getMemory(false).get());
+        slice.flip();
+        assertEquals('H', slice.read());
+        slice.close();
+        assertEquals(1024L, pool.getMemory(false).get());
+        stream.close();
+    }
+
+    @Test
+    void leak() {
+        final ByteBufferPool pool = new ByteBufferPool();
+        final LeakDetector detector = new LeakDetector(
+            LeakDetector.Level.PARANOID
+        );
+        pool.setLeakDetector(detector);
+        final RetainableByteBuffer buffer = pool.acquireRetainable(1024);
+        assertEquals(1, detector.getTracked().size());
+        buffer.retain();
+        buffer.release();
+        final LeakDetector.Leak leak = detector
+            .getTracked()
+            .iterator()
+            .next();
+        assertEquals(2, leak.getRecords().size());
+        buffer.release();
+        assertTrue(detector.getTracked().isEmpty());
+    }
+}